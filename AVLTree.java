@@ -1,9 +1,17 @@
-
+package chainpackage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Deque;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -11,20 +19,83 @@ import java.util.Set;
  */
 
 public class AVLTree<T> {
+    /*approximate heap bytes of a node without its modIndex set*/
+    private static final int NODE_BYTES = 40;
     private Node<T> root;
     private Comparator<T> cmp;
+    /*nodes visited by add and remove from the root down, and whether the left child was taken after each*/
+    private final Deque<Node<T>> path = new ArrayDeque<>(32);
+    private boolean[] wentLeft = new boolean[32];
+    private int depth = 0;
+    /*inorder successor unlinked by eliminateMostLeft*/
+    private Node<T> successor;
 
     public AVLTree(Comparator<T> cmp){
         this.cmp = cmp;
     }
 
+    private void push(Node<T> node, boolean left) {
+        if (depth == wentLeft.length) {
+            wentLeft = Arrays.copyOf(wentLeft, 2 * depth);
+        }
+        path.push(node);
+        wentLeft[depth++] = left;
+    }
+
+    private Node<T> pop() {
+        depth--;
+        return path.pop();
+    }
+
+    private static <T> int sizeOf(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <T> int leavesOf(Node<T> node) {
+        return node == null ? 0 : node.leaves;
+    }
+
+    /**
+     * Recomputes the amount of nodes and leaves of the subtree of node after its children changed.
+     */
+    private static <T> void update(Node<T> node) {
+        node.size = 1 + sizeOf(node.left) + sizeOf(node.right);
+        node.leaves = node.left == null && node.right == null ? 1 : leavesOf(node.left) + leavesOf(node.right);
+    }
+
+    /**
+     * Writes and reads the keys of a tree, used to store snapshots of it.
+     */
+    public interface KeyCodec<T> {
+        void write(DataOutput out, T key) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Receives the keys found by forEachInRange.
+     */
+    public interface RangeVisitor<T> {
+        void visit(T key);
+    }
+
+    /**
+     * Makes a node of another kind of tree for each node passed by build, with the blocks that modified it.
+     */
+    public interface NodeBuilder<T, N> {
+        N build(T key, N left, N right, int height, IndexSet modIndex);
+    }
+
     private static class Node<T> implements PrintableNode {
         private Node<T> left;
         private Node<T> right;
         private T key;
         private int height = 0;
+        /*amount of nodes and of leaves in the subtree of this node*/
+        private int size = 1;
+        private int leaves = 1;
         /*indexes of the BlockChain's blocks  that affected this node*/
-        private Set<Integer> modIndex = new HashSet<>();
+        private IndexSet modIndex = new IndexSet();
 
         public Node(T key) {
             height = 0;
@@ -95,45 +166,44 @@ public class AVLTree<T> {
     }
 
     /**
-     * Adds a new element to the AVLTree recursively. Checks balance, updates height and
-     * and updates the indexes of the blocks that affected the node on the way back of the
-     * recursion.
+     * Adds a new element to the AVLTree. Walks down keeping the visited nodes in path, then checks balance,
+     * updates height and updates the indexes of the blocks that affected each node on the way back up.
      * @param key element to add.
-     * @param current current element in the recursion.
+     * @param current root of the AVLTree.
      * @param blockIndex index of the BlockChain's block that has the add operation.
-     * @return child node in recursion or null if key is already present in the AVLTree.
+     * @return new root or null if key is already present in the AVLTree.
      */
     private Node<T> add(T key, Node<T> current, int blockIndex) {
-        Node<T> aux;
-        /*if the leaf is reached, add a new node*/
-        if(current == null){
-            return new Node<>(key, blockIndex);
-        }
-        /*advance through left child*/
-        if(cmp.compare(key,current.key) < 0 ){
-
-            aux = add(key, current.left, blockIndex); //calls recursive method.
-            if(aux == null) return null;
-            if(aux != current.left) current.modIndex.add(blockIndex);
-            current.left = aux;
-            /*update current nodes height*/
-            current.height = Math.max(current.height, current.getLeftChildHeight() + 1);
-        }
-        /*advance through right child*/
-        else if(cmp.compare(key,current.key) > 0 ){
-
-            aux = add(key, current.right, blockIndex); //calls recursive method.
-            if(aux == null) return null;
-            if(aux != current.right) current.modIndex.add(blockIndex);
-            current.right = aux;
-            /*update current nodes height*/
-            current.height = Math.max(current.height, current.getRightChildHeight() + 1);
-        }
-        else {
-            return null;
+        /*advance until the leaf is reached*/
+        while(current != null){
+            int c = cmp.compare(key, current.key);
+            if(c == 0){
+                while(depth > 0) pop();
+                return null;
+            }
+            push(current, c < 0);
+            current = c < 0 ? current.left : current.right;
+        }
+        /*add a new node*/
+        Node<T> aux = new Node<>(key, blockIndex);
+        while(depth > 0){
+            boolean left = wentLeft[depth - 1];
+            current = pop();
+            if(left){
+                if(aux != current.left) current.modIndex.add(blockIndex);
+                current.left = aux;
+                /*update current nodes height*/
+                current.height = Math.max(current.height, current.getLeftChildHeight() + 1);
+            } else {
+                if(aux != current.right) current.modIndex.add(blockIndex);
+                current.right = aux;
+                /*update current nodes height*/
+                current.height = Math.max(current.height, current.getRightChildHeight() + 1);
+            }
+            update(current);
+            aux = balance(current, blockIndex);
         }
-        current = balance(current, blockIndex);
-        return current;
+        return aux;
     }
 
     /**
@@ -188,6 +258,8 @@ public class AVLTree<T> {
         auxright.left = current;
         current.height = Math.max(current.getLeftChildHeight() + 1, current.getRightChildHeight() + 1);
         auxright.height = Math.max(auxright.height, current.height + 1);
+        update(current);
+        update(auxright);
         current.modIndex.add(blockIndex);
         auxright.modIndex.add(blockIndex);
         if(current.right != null) current.right.modIndex.add(blockIndex);
@@ -206,6 +278,8 @@ public class AVLTree<T> {
         auxleft.right = current;
         current.height = Math.max(current.getLeftChildHeight() + 1, current.getRightChildHeight() + 1);
         auxleft.height = Math.max(auxleft.height, current.height + 1);
+        update(current);
+        update(auxleft);
         current.modIndex.add(blockIndex);
         auxleft.modIndex.add(blockIndex);
         if(current.left != null) current.left.modIndex.add(blockIndex);
@@ -224,61 +298,47 @@ public class AVLTree<T> {
     }
 
     /**
-     * Removes a key from the AVLTree.
-     *  A DataPair is used to allow for two return values for the remove method.
+     * Removes a key from the AVLTree. Walks down keeping the visited nodes in path, then checks balance,
+     * updates height and updates the indexes of the blocks that affected each node on the way back up.
      * @param key element to be removed from AVLTree.
      * @param blockIndex index of the BlockChain's block that has the remove operation.
      * @return true if removal was successful or false otherwise.
      */
     public boolean remove(T key, int blockIndex){
-        DataPair<Boolean,Node<T>> aux = remove(key, root, blockIndex);
-        root = aux.getElement2();
-        return aux.getElement1();
-
-    }
-    /**
-     * Removes a key from the AVLTree recursively. Checks balance, updates height and
-     * and updates the indexes of the blocks that affected the node on the way back of the
-     * recursion.
-     * This method serves a wrapper. A DataPair is used to allow for two return values for the remove method.
-     * @param key element to be removed from AVLTree.
-     * @param blockIndex index of the BlockChain's block that has the remove operation.
-     * @return a DataPair. The element1 of the DataPair indicates if the removal was successful or not with a
-     * boolean and element2 is the new child returned in the recursion.
-     */
-    private DataPair<Boolean, Node<T>> remove(T key, Node<T> current, int blockIndex){
+        Node<T> current = root;
+        /*advance until the element is found*/
+        while(current != null){
+            int c = cmp.compare(key, current.key);
+            if(c == 0) break;
+            push(current, c < 0);
+            current = c < 0 ? current.left : current.right;
+        }
         /*if the element was not found returns false (unsuccessfull removal)*/
         if(current == null){
-            return new DataPair<>(false,null);
-        }
-        DataPair<Boolean,Node<T>> aux;
-        Node<T> node;
-        /*advance through left child*/
-        if(cmp.compare(key, current.key) < 0){
-            aux = remove(key, current.left, blockIndex);
-            node = aux.getElement2();
-            if(current.left != node) current.modIndex.add(blockIndex);
-            current.left = node;
-        }
-        /*advance through right child*/
-        else if(cmp.compare(key, current.key) > 0){
-            aux = remove(key, current.right, blockIndex);
-            node = aux.getElement2();
-            if(current.right != node) current.modIndex.add(blockIndex);
-            current.right = node;
+            while(depth > 0) pop();
+            return false;
         }
         /*element found*/
-        else {
-            current = deleteKey(current, blockIndex);
-            current = balance(current, blockIndex);
-            return new DataPair<>(true, current);
-        }
-        /*if removal was successful, updates height and checks balance on the way back*/
-        if(aux.getElement1()) {
+        current = deleteKey(current, blockIndex);
+        current = balance(current, blockIndex);
+        /*updates height and checks balance on the way back*/
+        while(depth > 0){
+            boolean left = wentLeft[depth - 1];
+            Node<T> node = current;
+            current = pop();
+            if(left){
+                if(current.left != node) current.modIndex.add(blockIndex);
+                current.left = node;
+            } else {
+                if(current.right != node) current.modIndex.add(blockIndex);
+                current.right = node;
+            }
             current.height = Math.max(current.getLeftChildHeight() + 1, current.getRightChildHeight() + 1);
+            update(current);
             current = balance(current, blockIndex);
         }
-        return new DataPair<>(aux.getElement1(), current);
+        root = current;
+        return true;
     }
 
     /**
@@ -300,67 +360,140 @@ public class AVLTree<T> {
             return node.right;
         /*search for the successor inorder*/
         } else {
-            DataPair<Node<T>, Node<T>> aux = eliminateMostLeft(node.right, blockIndex);
-            Node<T> ret = aux.getElement2();
-            /*it may occur that the inorder successor is the right child*/
-            if(ret == node.right) ret.right = null;
-            else ret.right = aux.getElement1();
+            Node<T> rest = eliminateMostLeft(node.right, blockIndex);
+            Node<T> ret = successor;
+            successor = null;
+            /*it may occur that the inorder successor is the right child, then it keeps its right subtree*/
+            if(ret != node.right) ret.right = rest;
             ret.left = node.left;
             ret.height = Math.max(ret.getLeftChildHeight() + 1, ret.getRightChildHeight() + 1);
+            update(ret);
             ret.modIndex.add(blockIndex);
             return ret;
         }
     }
 
     /**
-     * Removes the successor inorder from its current position and returns it recursively.  Checks balance, updates height and
-     * and updates the indexes of the blocks that affected the node on the way back of the
-     * recursion.
-     * @param current node in the recursion.
+     * Removes the successor inorder from its current position and leaves it in successor. Checks balance, updates
+     * height and updates the indexes of the blocks that affected each node on the way back up.
+     * @param current root of the subtree where the successor is searched.
      * @param blockIndex index of the BlockChain's block that has the remove operation.
-     * @return a DataPair in which the element1 is the new child in recursion and element2 is the succesor inorder.
+     * @return the new root of the subtree.
      */
-    private DataPair<Node<T>,Node<T>> eliminateMostLeft(Node<T> current, int blockIndex){
+    private Node<T> eliminateMostLeft(Node<T> current, int blockIndex){
         if(current == null){
             throw new NoSuccesorInorderException("There was no succesor inorder.");
         }
-        DataPair<Node<T>, Node<T>> aux;
-        if(current.left != null){
-            /*call recursion*/
-            aux = eliminateMostLeft(current.left, blockIndex);
-            if(current.left != aux.getElement1()){ current.modIndex.add(blockIndex);
-
-            }
-            current.left = aux.getElement1();
-        } else {
-            return new DataPair<>(null, current);
+        int base = depth;
+        while(current.left != null){
+            push(current, true);
+            current = current.left;
+        }
+        successor = current;
+        /*the successor has no left child, its right subtree takes its place*/
+        Node<T> aux = current.right;
+        while(depth > base){
+            current = pop();
+            if(current.left != aux) current.modIndex.add(blockIndex);
+            current.left = aux;
+            current.height = Math.max(current.getLeftChildHeight() + 1, current.getRightChildHeight() + 1);
+            update(current);
+            aux = balance(current, blockIndex);
         }
-        current.height = Math.max(current.getLeftChildHeight() + 1, current.getRightChildHeight() + 1);
-        current = balance(current, blockIndex);
-        return new DataPair<>(current, aux.getElement2());
+        return aux;
     }
 
+    /**
+     * @return the keys between inf and sup, both included, in increasing order.
+     */
+    public List<T> getInRange(T inf, T sup) {
+        final List<T> result = new ArrayList<>();
+        forEachInRange(inf, sup, new RangeVisitor<T>() {
+            @Override
+            public void visit(T key) {
+                result.add(key);
+            }
+        });
+        return result;
+    }
 
+    /**
+     * Passes every node to builder after its children, with the nodes built for them or null for an empty child,
+     * so the built tree has the same shape. The sets must not be modified.
+     * @return the node built for the root, or null if the tree is empty.
+     */
+    public <N> N build(NodeBuilder<T, N> builder) {
+        return build(root, builder);
+    }
 
+    private <N> N build(Node<T> current, NodeBuilder<T, N> builder) {
+        if (current == null) return null;
+        N left = build(current.left, builder);
+        N right = build(current.right, builder);
+        return builder.build(current.key, left, right, current.height, current.modIndex);
+    }
 
-
-    public List<T> getInRange(T inf, T sup) {
-        List<T> result = new LinkedList<>();
-        getInRange(root, result, inf, sup, cmp);
-        return result;
+    /**
+     * Passes the keys between inf and sup, both included, to visitor in increasing order without collecting them.
+     * Only the subtrees that may hold keys in the range are visited.
+     */
+    public void forEachInRange(T inf, T sup, RangeVisitor<T> visitor) {
+        forEachInRange(root, inf, sup, visitor);
     }
 
-    private void getInRange(Node<T> current, List<T> result, T inf, T sup, Comparator<T> cmp) {
+    private void forEachInRange(Node<T> current, T inf, T sup, RangeVisitor<T> visitor) {
         if (current == null) {
             return;
         }
-        if (cmp.compare(inf, current.key) < 0 && cmp.compare(inf, current.key) > 0) {
-            result.add(current.key);
-        }
-        getInRange(current.right, result, inf, sup, cmp);
-        getInRange(current.left, result, inf, sup, cmp);
-        return;
+        int low = cmp.compare(inf, current.key);
+        int high = cmp.compare(current.key, sup);
+        /*the left subtree only has smaller keys, the right one only bigger ones*/
+        if (low < 0) forEachInRange(current.left, inf, sup, visitor);
+        if (low <= 0 && high <= 0) visitor.visit(current.key);
+        if (high < 0) forEachInRange(current.right, inf, sup, visitor);
     }
+
+    /**
+     * Iterates the keys between inf and sup, both included, in increasing order. Each key is found when next()
+     * is called, so a scan that stops early does not pay for the rest of the range.
+     * The tree must not be modified while the iterator is in use.
+     */
+    public Iterator<T> iterator(final T inf, final T sup) {
+        return new Iterator<T>() {
+            /*nodes whose key and right subtree are still to be returned, the next one on top*/
+            private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+            {
+                descend(root);
+            }
+
+            /*pushes the nodes of the subtree that are not lower than inf, from its root to its lowest one*/
+            private void descend(Node<T> current) {
+                while (current != null) {
+                    if (cmp.compare(inf, current.key) <= 0) {
+                        stack.push(current);
+                        current = current.left;
+                    } else {
+                        current = current.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty() && cmp.compare(stack.peek().key, sup) <= 0;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Node<T> current = stack.pop();
+                descend(current.right);
+                return current.key;
+            }
+        };
+    }
+
     public void print(){
         printNodesByLevel();
 
@@ -413,6 +546,19 @@ public class AVLTree<T> {
         return lookup(key,root);
     }
 
+    /**
+     * @return the node with key, root of the subtree to print, or null if key is not in the tree.
+     */
+    public PrintableNode getSubtree(T key) {
+        Node<T> current = root;
+        while (current != null) {
+            int c = cmp.compare(key, current.key);
+            if (c == 0) return current;
+            current = c < 0 ? current.left : current.right;
+        }
+        return null;
+    }
+
     /**
      * Searches for key in the Tree and returns modIndex set recursively.
      * @param key to be searched in tree.
@@ -454,25 +600,82 @@ public class AVLTree<T> {
     }
 
     public int getLeavesCount(Node<T> current) {
-        if (current == null) return 0;
-        int aux = getLeavesCount(current.left) + getLeavesCount(current.right);
-        if (aux == 0)
-            return 1;
-        return aux;
+        return leavesOf(current);
+    }
+
+    /**
+     * @return the lowest key, or null if the tree is empty.
+     */
+    public T getMin() {
+        Node<T> current = root;
+        if (current == null) return null;
+        while (current.left != null) current = current.left;
+        return current.key;
     }
 
+    /**
+     * @return the highest key, or null if the tree is empty.
+     */
     public T getMax() {
-        return getMax(this.root);
+        Node<T> current = root;
+        if (current == null) return null;
+        while (current.right != null) current = current.right;
+        return current.key;
     }
 
-    private T getMax(Node<T> current) {
-        if (current == null) {
-            return null;
+    /**
+     * @return amount of keys lower than key, whether key is in the tree or not.
+     */
+    public int rank(T key) {
+        return rank(key, false);
+    }
+
+    /**
+     * @param inclusive whether key itself is counted if it is in the tree.
+     */
+    private int rank(T key, boolean inclusive) {
+        int ret = 0;
+        Node<T> current = root;
+        while (current != null) {
+            int c = cmp.compare(key, current.key);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                current = current.left;
+            } else {
+                ret += sizeOf(current.left) + 1;
+                if (c == 0) break;
+                current = current.right;
+            }
         }
-        if (current.right != null) {
-            return getMax(current.right);
+        return ret;
+    }
+
+    /**
+     * @param k position of the key in increasing order, starting at 0.
+     * @return the k-th lowest key.
+     * @throws IndexOutOfBoundsException if k is negative or not lower than size().
+     */
+    public T select(int k) {
+        if (k < 0 || k >= size()) throw new IndexOutOfBoundsException("No key at position " + k);
+        Node<T> current = root;
+        while (true) {
+            int lower = sizeOf(current.left);
+            if (k < lower) {
+                current = current.left;
+            } else if (k > lower) {
+                k -= lower + 1;
+                current = current.right;
+            } else {
+                return current.key;
+            }
         }
-        return current.key;
+    }
+
+    /**
+     * @return amount of keys between inf and sup, both included.
+     */
+    public int countInRange(T inf, T sup) {
+        if (cmp.compare(inf, sup) > 0) return 0;
+        return rank(sup, true) - rank(inf, false);
     }
 
     public void printDescendants(Node<T> node) {
@@ -498,11 +701,11 @@ public class AVLTree<T> {
         if (!(o instanceof AVLTree)) {
             return false;
         }
-        AVLTree<T> bst = (AVLTree<T>) o;
+        AVLTree<?> bst = (AVLTree<?>) o;
         return equals(root, bst.root);
     }
 
-    private boolean equals(Node<T> current, Node<T> other) {
+    private boolean equals(Node<?> current, Node<?> other) {
         if (current == null && other == null)
             return true;
         boolean right, left;
@@ -524,13 +727,92 @@ public class AVLTree<T> {
     }
 
 
-    public int size() {
-        return size(root);
+    /**
+     * @return a tree with the same shape, heights and modIndex sets that shares nothing but the keys with this one.
+     */
+    public AVLTree<T> copy() {
+        AVLTree<T> ret = new AVLTree<>(cmp);
+        ret.root = copy(root);
+        return ret;
+    }
+
+    private Node<T> copy(Node<T> current) {
+        if (current == null) return null;
+        Node<T> ret = new Node<>(current.key, copy(current.left), copy(current.right));
+        ret.height = current.height;
+        ret.size = current.size;
+        ret.leaves = current.leaves;
+        ret.modIndex = new IndexSet(current.modIndex);
+        return ret;
     }
 
-    private int size(Node<T> current) {
+    /**
+     * @return approximate bytes of heap taken by the nodes and their modIndex sets, the keys not counted
+     * since copies share them.
+     */
+    public long getBytes() {
+        return getBytes(root);
+    }
+
+    private long getBytes(Node<T> current) {
         if (current == null) return 0;
-        return 1 + size(current.right) + size(current.left);
+        return NODE_BYTES + current.modIndex.getBytes() + getBytes(current.left) + getBytes(current.right);
+    }
+
+    /**
+     * Writes every node in preorder: its key, height and modIndex set. Empty children are written as a 0 byte.
+     * @param out destination of the snapshot.
+     * @param codec writes the keys.
+     */
+    public void write(DataOutput out, KeyCodec<T> codec) throws IOException {
+        write(out, codec, root);
+    }
+
+    private void write(DataOutput out, KeyCodec<T> codec, Node<T> current) throws IOException {
+        if (current == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        codec.write(out, current.key);
+        out.writeInt(current.height);
+        out.writeInt(current.modIndex.size());
+        for (int index : current.modIndex) {
+            out.writeInt(index);
+        }
+        write(out, codec, current.left);
+        write(out, codec, current.right);
+    }
+
+    /**
+     * Rebuilds a tree stored with write().
+     * @param in source of the snapshot.
+     * @param cmp comparator of the keys.
+     * @param codec reads the keys.
+     * @return the tree, as it was when it was written.
+     */
+    public static <T> AVLTree<T> read(DataInput in, Comparator<T> cmp, KeyCodec<T> codec) throws IOException {
+        AVLTree<T> ret = new AVLTree<>(cmp);
+        ret.root = read(in, codec);
+        return ret;
+    }
+
+    private static <T> Node<T> read(DataInput in, KeyCodec<T> codec) throws IOException {
+        if (in.readByte() == 0) return null;
+        Node<T> ret = new Node<>(codec.read(in));
+        ret.height = in.readInt();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            ret.modIndex.add(in.readInt());
+        }
+        ret.left = read(in, codec);
+        ret.right = read(in, codec);
+        update(ret);
+        return ret;
+    }
+
+    public int size() {
+        return sizeOf(root);
     }
     
     public void clearTree() {
@@ -1,3 +1,5 @@
+package chainpackage;
+
 import java.util.List;
 
 /**
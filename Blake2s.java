@@ -0,0 +1,206 @@
+package chainpackage;
+
+/**
+ * BLAKE2s-256 (RFC 7693) digest that can remember its state after hashing a prefix.
+ * It needs about a third of the operations of SHA-256 per 64 byte block, which makes it the
+ * cheap proof of work option for chains that favour throughput.
+ * No memory is allocated after construction. Instances are not thread safe.
+ */
+public final class Blake2s implements Digest {
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final byte[][] SIGMA = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+            {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3},
+            {11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4},
+            {7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8},
+            {9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13},
+            {2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9},
+            {12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11},
+            {13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10},
+            {6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5},
+            {10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0}
+    };
+
+    private final int[] h = new int[8];
+    private final int[] m = new int[16];
+    private final byte[] buffer = new byte[64];
+    private int bufferLength;
+    /*bytes compressed so far*/
+    private long counter;
+
+    /*state saved by mark()*/
+    private final int[] markedH = new int[8];
+    private final byte[] markedBuffer = new byte[64];
+    private int markedBufferLength;
+    private long markedCounter;
+
+    public Blake2s() {
+        reset();
+    }
+
+    @Override
+    public int getDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    public void reset() {
+        System.arraycopy(IV, 0, h, 0, 8);
+        /*parameter block: 32 byte digest, no key, fanout and depth 1*/
+        h[0] ^= 0x01010000 | DIGEST_LENGTH;
+        bufferLength = 0;
+        counter = 0;
+    }
+
+    @Override
+    public void mark() {
+        System.arraycopy(h, 0, markedH, 0, 8);
+        System.arraycopy(buffer, 0, markedBuffer, 0, bufferLength);
+        markedBufferLength = bufferLength;
+        markedCounter = counter;
+    }
+
+    @Override
+    public void restore() {
+        System.arraycopy(markedH, 0, h, 0, 8);
+        System.arraycopy(markedBuffer, 0, buffer, 0, markedBufferLength);
+        bufferLength = markedBufferLength;
+        counter = markedCounter;
+    }
+
+    /**
+     * A full buffer is only compressed once more data arrives, because the last block
+     * of the message is compressed with the final flag.
+     */
+    @Override
+    public void update(byte[] data, int offset, int len) {
+        while (len > 0) {
+            if (bufferLength == 64) {
+                counter += 64;
+                compress(buffer, 0, false);
+                bufferLength = 0;
+            }
+            if (bufferLength == 0 && len > 64) {
+                counter += 64;
+                compress(data, offset, false);
+                offset += 64;
+                len -= 64;
+                continue;
+            }
+            int n = Math.min(len, 64 - bufferLength);
+            System.arraycopy(data, offset, buffer, bufferLength, n);
+            bufferLength += n;
+            offset += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        counter += bufferLength;
+        while (bufferLength < 64) buffer[bufferLength++] = 0;
+        compress(buffer, 0, true);
+        for (int i = 0; i < 8; i++) {
+            int s = h[i];
+            out[offset + 4 * i] = (byte) s;
+            out[offset + 4 * i + 1] = (byte) (s >>> 8);
+            out[offset + 4 * i + 2] = (byte) (s >>> 16);
+            out[offset + 4 * i + 3] = (byte) (s >>> 24);
+        }
+        reset();
+    }
+
+    private void compress(byte[] block, int offset, boolean last) {
+        int[] m = this.m;
+        for (int i = 0; i < 16; i++) {
+            int j = offset + 4 * i;
+            m[i] = (block[j] & 0xff) | ((block[j + 1] & 0xff) << 8) | ((block[j + 2] & 0xff) << 16) | (block[j + 3] << 24);
+        }
+        int v0 = h[0], v1 = h[1], v2 = h[2], v3 = h[3], v4 = h[4], v5 = h[5], v6 = h[6], v7 = h[7];
+        int v8 = IV[0], v9 = IV[1], v10 = IV[2], v11 = IV[3];
+        int v12 = IV[4] ^ (int) counter;
+        int v13 = IV[5] ^ (int) (counter >>> 32);
+        int v14 = last ? ~IV[6] : IV[6];
+        int v15 = IV[7];
+        for (int r = 0; r < 10; r++) {
+            byte[] s = SIGMA[r];
+            v0 += v4 + m[s[0]];
+            v12 = Integer.rotateRight(v12 ^ v0, 16);
+            v8 += v12;
+            v4 = Integer.rotateRight(v4 ^ v8, 12);
+            v0 += v4 + m[s[1]];
+            v12 = Integer.rotateRight(v12 ^ v0, 8);
+            v8 += v12;
+            v4 = Integer.rotateRight(v4 ^ v8, 7);
+            v1 += v5 + m[s[2]];
+            v13 = Integer.rotateRight(v13 ^ v1, 16);
+            v9 += v13;
+            v5 = Integer.rotateRight(v5 ^ v9, 12);
+            v1 += v5 + m[s[3]];
+            v13 = Integer.rotateRight(v13 ^ v1, 8);
+            v9 += v13;
+            v5 = Integer.rotateRight(v5 ^ v9, 7);
+            v2 += v6 + m[s[4]];
+            v14 = Integer.rotateRight(v14 ^ v2, 16);
+            v10 += v14;
+            v6 = Integer.rotateRight(v6 ^ v10, 12);
+            v2 += v6 + m[s[5]];
+            v14 = Integer.rotateRight(v14 ^ v2, 8);
+            v10 += v14;
+            v6 = Integer.rotateRight(v6 ^ v10, 7);
+            v3 += v7 + m[s[6]];
+            v15 = Integer.rotateRight(v15 ^ v3, 16);
+            v11 += v15;
+            v7 = Integer.rotateRight(v7 ^ v11, 12);
+            v3 += v7 + m[s[7]];
+            v15 = Integer.rotateRight(v15 ^ v3, 8);
+            v11 += v15;
+            v7 = Integer.rotateRight(v7 ^ v11, 7);
+            v0 += v5 + m[s[8]];
+            v15 = Integer.rotateRight(v15 ^ v0, 16);
+            v10 += v15;
+            v5 = Integer.rotateRight(v5 ^ v10, 12);
+            v0 += v5 + m[s[9]];
+            v15 = Integer.rotateRight(v15 ^ v0, 8);
+            v10 += v15;
+            v5 = Integer.rotateRight(v5 ^ v10, 7);
+            v1 += v6 + m[s[10]];
+            v12 = Integer.rotateRight(v12 ^ v1, 16);
+            v11 += v12;
+            v6 = Integer.rotateRight(v6 ^ v11, 12);
+            v1 += v6 + m[s[11]];
+            v12 = Integer.rotateRight(v12 ^ v1, 8);
+            v11 += v12;
+            v6 = Integer.rotateRight(v6 ^ v11, 7);
+            v2 += v7 + m[s[12]];
+            v13 = Integer.rotateRight(v13 ^ v2, 16);
+            v8 += v13;
+            v7 = Integer.rotateRight(v7 ^ v8, 12);
+            v2 += v7 + m[s[13]];
+            v13 = Integer.rotateRight(v13 ^ v2, 8);
+            v8 += v13;
+            v7 = Integer.rotateRight(v7 ^ v8, 7);
+            v3 += v4 + m[s[14]];
+            v14 = Integer.rotateRight(v14 ^ v3, 16);
+            v9 += v14;
+            v4 = Integer.rotateRight(v4 ^ v9, 12);
+            v3 += v4 + m[s[15]];
+            v14 = Integer.rotateRight(v14 ^ v3, 8);
+            v9 += v14;
+            v4 = Integer.rotateRight(v4 ^ v9, 7);
+        }
+        h[0] ^= v0 ^ v8;
+        h[1] ^= v1 ^ v9;
+        h[2] ^= v2 ^ v10;
+        h[3] ^= v3 ^ v11;
+        h[4] ^= v4 ^ v12;
+        h[5] ^= v5 ^ v13;
+        h[6] ^= v6 ^ v14;
+        h[7] ^= v7 ^ v15;
+    }
+}
@@ -1,65 +1,406 @@
-import java.security.MessageDigest;
-import java.util.ArrayList;
+package chainpackage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class BlockChain {
 	private Terminal terminal;
 	private int zeros;
+	private Miner miner;
+	/*hash function of every block, the chain is validated with the same one*/
+	private Hasher hasher;
+	private ChainValidator validator = new ChainValidator();
+	/*commitment to the hash of every block, in order*/
+	private MerkleAccumulator merkle;
+	/*every block up to this index passed validation and was not modified since*/
+	private int verifiedUpTo = 0;
+	/*incremented by modify(), a validation that overlaps a modification does not move the watermark*/
+	private int modifications = 0;
+	private final Object watermarkLock = new Object();
+	/*single thread that seals the pending blocks in index order*/
+	private ExecutorService sealer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "block-sealer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	/*index that the next operation will get, sealed or not*/
+	private volatile int nextIndex = 0;
+	private AtomicInteger pendingBlocks = new AtomicInteger();
+	/*written by the operating thread, read by any thread that waits for the chain*/
+	private volatile CompletableFuture<BlockHash> lastSealed = CompletableFuture.completedFuture(null);
+	/*proof of work in progress, null before the first block*/
+	private volatile MiningJob currentJob;
+	/*milliseconds each block may be mined before giving up, 0 for no limit*/
+	private volatile long miningTimeout = 0;
+	/*set by close(), the blocks that are still queued fail instead of being mined*/
+	private volatile boolean closed;
+	/*set when a block could not be sealed, no block is added after it until the sealer recovers*/
+	private volatile RuntimeException halted;
+	/*sealed blocks, in direct memory or in a log on disk*/
+	private BlockStore store = new DirectBlockStore();
+	/*index of every sealed block by its hash*/
+	private HashIndex hashIndex = new HashIndex(new HashIndex.BlockHashes() {
+		@Override
+		public BlockHash get(int index) {
+			return store.getHash(index);
+		}
+	});
+	/*blocks below it were restored from a snapshot and are put in the hash index on the first search*/
+	private volatile int unindexed = 0;
+	private static final String SETTINGS_FILE = "chain.properties";
+	/*snapshots of the tree, so a reopened chain only replays the blocks after the newest one*/
+	private SnapshotStore<Integer> snapshots;
+	private ExecutorService snapshotWriter;
+	/*blocks between two snapshots of the tree, 0 for none*/
+	private volatile int snapshotInterval = 1024;
 
 
-	private AVLTree<Integer> tree = new AVLTree<>(new Comparator<Integer>() {
+	private static final Comparator<Integer> KEYS = new Comparator<Integer>() {
         @Override
         public int compare(Integer o1, Integer o2) {
             return o1.compareTo(o2);
         }
-    });
-	private List<Block> blockChain = new ArrayList<Block>();
+    };
+	private static final AVLTree.KeyCodec<Integer> KEY_CODEC = new AVLTree.KeyCodec<Integer>() {
+		@Override
+		public void write(DataOutput out, Integer key) throws IOException {
+			out.writeInt(key);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+	};
+	private AVLTree<Integer> tree = new AVLTree<>(KEYS);
+	/*the tree after every block that changed it, sharing the nodes that did not change*/
+	private PersistentAVLTree<Integer> versions = new PersistentAVLTree<>(KEYS);
+	/*checkpoints of the whole tree, with modIndex, to rebuild its state after any sealed block*/
+	private History<Integer> history = new History<>(KEYS, new History.Replayer<Integer>() {
+		@Override
+		public void apply(AVLTree<Integer> target, int index) {
+			BlockChain.this.apply(target, index);
+		}
+	});
+	/*the store takes one appending thread and any amount of readers, reads do not wait for the sealer*/
+	private List<Block> blockChain = new StoredBlocks();
 	
+	/**
+	 * Creates a chain sealed by the miner shared by every chain that is not given one.
+	 */
 	public BlockChain(int zeros, Terminal terminal) {
+		this(zeros, terminal, Miner.shared());
+	}
+
+	/**
+	 * @param miner proof of work engine used to seal the blocks of this chain.
+	 */
+	public BlockChain(int zeros, Terminal terminal, Miner miner) {
+		this(zeros, terminal, miner, HashAlgorithm.SHA256);
+	}
+
+	/**
+	 * @param miner proof of work engine used to seal the blocks of this chain.
+	 * @param hasher hash function of the blocks of this chain.
+	 */
+	public BlockChain(int zeros, Terminal terminal, Miner miner, Hasher hasher) {
 		this.terminal = terminal;
 	    this.zeros = zeros;
+	    this.miner = miner;
+	    this.hasher = hasher;
+	    this.merkle = new MerkleAccumulator(hasher);
 		createGenesisBlock();
 
 	}
+
+	/**
+	 * Creates a chain stored in directory, or reopens the one that is already there. A reopened chain
+	 * loads the newest snapshot of the tree that matches the log and applies again the operations of
+	 * the blocks after it.
+	 * @param miner proof of work engine used to seal the blocks of this chain.
+	 * @param hasher hash function of the blocks of this chain, it must be the one the chain was created with.
+	 * @param directory folder of the block log.
+	 */
+	public BlockChain(int zeros, Terminal terminal, Miner miner, Hasher hasher, Path directory) throws IOException {
+		this.terminal = terminal;
+	    this.zeros = zeros;
+	    this.miner = miner;
+	    this.hasher = hasher;
+	    checkSettings(directory);
+	    this.merkle = new MerkleLog(hasher, directory);
+	    this.store = new BlockLog(directory);
+	    this.snapshots = new SnapshotStore<>(directory, KEYS, KEY_CODEC, 2);
+	    this.snapshotWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "snapshot-writer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	    if (store.size() == 0) {
+	    	createGenesisBlock();
+	    } else {
+	    	int snapshot = loadSnapshot();
+	    	if (snapshot >= 0) {
+	    		history.add(snapshot, tree);
+	    		versions.setBase(tree, snapshot);
+	    	}
+	    	replay(snapshot + 1);
+	    }
+	}
+
+	/**
+	 * Records the hash function of a new chain or checks that it matches the one of an existing chain.
+	 */
+	private void checkSettings(Path directory) throws IOException {
+		Path file = directory.resolve(SETTINGS_FILE);
+		Properties settings = new Properties();
+		if (Files.exists(file)) {
+			try (InputStream in = Files.newInputStream(file)) {
+				settings.load(in);
+			}
+			if (!hasher.getName().equals(settings.getProperty("hash"))) {
+				throw new IllegalArgumentException("The chain in " + directory + " uses "
+						+ settings.getProperty("hash") + ", not " + hasher.getName() + ".");
+			}
+		} else {
+			Files.createDirectories(directory);
+			settings.setProperty("hash", hasher.getName());
+			try (OutputStream out = Files.newOutputStream(file)) {
+				settings.store(out, "AVL-Blockchain");
+			}
+		}
+	}
+
+	/**
+	 * Replaces the tree with the newest snapshot whose block is still in the log with the same hash.
+	 * @return index of the block of the snapshot or -1 if there is no usable one.
+	 */
+	private int loadSnapshot() throws IOException {
+		for (int index : snapshots.indexes()) {
+			if (index >= store.size()) continue;
+			SnapshotStore.Snapshot<Integer> snapshot = snapshots.read(index);
+			if (snapshot != null && snapshot.getTip().equals(store.getHash(index))) {
+				tree = snapshot.getTree();
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Applies the operations of the blocks from index on to the tree and its versions, indexes their hashes
+	 * and appends to the Merkle accumulator the blocks it did not save. The blocks before index are only read
+	 * again when they are asked for: lookupAt goes through the history for them and the first search by hash
+	 * indexes them. Each block applies the operation it was sealed with, even if modify() replaced its
+	 * instruction since: the tree is the one the chain had before it was tampered with, as when it was not
+	 * reopened. Instructions that are not an operation, like the genesis one, change nothing.
+	 */
+	private void replay(int from) {
+		int n = store.size();
+		/*the saved leaves are kept up to the end of the log if the last of them is still the same block*/
+		int hashed = Math.min(merkle.size(), n);
+		if (hashed > 0 && !merkle.hasLeaf(hashed - 1, store.getHash(hashed - 1))) hashed = 0;
+		merkle.truncate(hashed);
+		for (int i = hashed; i < from; i++) {
+			merkle.append(store.getHash(i));
+		}
+		for (int i = from; i < n; i++) {
+			Instruction instruction = store.getAppendedInstruction(i);
+			switch (instruction.getOpcode()) {
+				case Instruction.ADD:
+					tree.add(instruction.getKey(), i);
+					versions.add(instruction.getKey(), i);
+					break;
+				case Instruction.REMOVE:
+					tree.remove(instruction.getKey(), i);
+					versions.remove(instruction.getKey(), i);
+					break;
+				default: break;
+			}
+			BlockHash hash = store.getHash(i);
+			if (i >= hashed) merkle.append(hash);
+			hashIndex.put(hash, i);
+		}
+		unindexed = from;
+		nextIndex = n;
+	}
+
+	/**
+	 * Puts in the hash index the blocks restored from a snapshot, once.
+	 */
+	private void indexRestoredBlocks() {
+		if (unindexed == 0) return;
+		synchronized (hashIndex) {
+			for (int i = 0; i < unindexed; i++) {
+				hashIndex.put(store.getHash(i), i);
+			}
+			unindexed = 0;
+		}
+	}
+
+	/**
+	 * Applies the operation of the stored block at index to target, used to rebuild past states of the tree.
+	 * As in replay(), it is the operation the block was sealed with, even if modify() replaced it since.
+	 */
+	private void apply(AVLTree<Integer> target, int index) {
+		Instruction instruction = store.getAppendedInstruction(index);
+		switch (instruction.getOpcode()) {
+			case Instruction.ADD: target.add(instruction.getKey(), index); break;
+			case Instruction.REMOVE: target.remove(instruction.getKey(), index); break;
+			default: break;
+		}
+	}
+
+	/**
+	 * @param blocks blocks between two snapshots of the tree of a stored chain, 0 to take none.
+	 */
+	public void setSnapshotInterval(int blocks) {
+		this.snapshotInterval = blocks;
+	}
+
+	/**
+	 * Writes the tree as it was after the block at index in the background once that block is sealed, so the
+	 * snapshot can be matched against its hash. The tree is rebuilt from the history in the snapshot writer,
+	 * the thread that operates on the chain does not copy it.
+	 */
+	private void scheduleSnapshot(final int index, CompletableFuture<BlockHash> sealed) {
+		sealed.thenAcceptAsync(new Consumer<BlockHash>() {
+			@Override
+			public void accept(BlockHash tip) {
+				try {
+					snapshots.write(history.get(index), index, tip);
+					merkle.flush();
+				} catch (IOException e) {
+					terminal.printMessage("Snapshot of block " + index + " could not be written: " + e.getMessage());
+				}
+			}
+		}, snapshotWriter);
+	}
 	
 	public int getZeros() {
 		return zeros;
 	}
+	public Hasher getHasher() {
+		return hasher;
+	}
+	/**
+	 * @return the tree that operations change. Only the thread that operates may use it, other threads read
+	 * getVersion().
+	 */
 	public AVLTree<Integer> getTree() {
 		return tree;
 	}
+
+	/**
+	 * @return the keys after the last operation as a tree that never changes, readable from any thread.
+	 */
+	public PersistentAVLTree.Version<Integer> getVersion() {
+		return versions.getVersion();
+	}
 	
+	/**
+	 * A pending block holds its own fields until it is sealed and stored. Blocks read from the chain
+	 * are views that only hold their index and read every field from the store when asked for it.
+	 */
 	private class Block {
 		
 		private int index;
+		/*true for a view of a block in the store*/
+		private boolean stored;
 		private long nonce;
-		private String instruction; //"add 5 true", "remove 3 true"
-		private String hash;
-		private String prevHash;
+		/*bumped every time the whole range of nonces is tried without success*/
+		private int extraNonce;
+		/*moment the proof of work started, in milliseconds*/
+		private long timestamp;
+		private Instruction instruction; //"add 5 true", "remove 3 true"
+		private BlockHash hash;
+		private BlockHash prevHash;
 		
 		
-		public Block(int index, String instruction, String prevHash) {
+		public Block(int index, Instruction instruction, BlockHash prevHash) {
+			this(index, instruction);
+			seal(prevHash);
+		}
+
+		/**
+		 * Creates a pending block. It has no hash until it is sealed.
+		 */
+		public Block(int index, Instruction instruction) {
 			this.index = index;
 			this.instruction = instruction;
+		}
+
+		/**
+		 * Creates a view of the block at index of the store.
+		 */
+		private Block(int index) {
+			this.index = index;
+			this.stored = true;
+		}
+
+		private BlockStore.Record toRecord() {
+			return new BlockStore.Record(index, getNonce(), getTimestamp(), getExtraNonce(), getHash(), getPrevHash(),
+					getInstruction());
+		}
+
+		/**
+		 * Links the block to its predecessor and performs the proof of work.
+		 * @param prevHash hash of the previous block of the chain.
+		 */
+		private void seal(BlockHash prevHash) {
 			this.prevHash = prevHash;
-			this.hash =  calculateHash();
+			this.timestamp = System.currentTimeMillis();
+			this.hash = calculateHash();
 		}
 		
-		public String getPrevHash() {
-			return prevHash;
+		public BlockHash getPrevHash() {
+			return stored ? store.getPrevHash(index) : prevHash;
 		}
 		
 		public long getNonce() {
-			return nonce;
+			return stored ? store.getNonce(index) : nonce;
+		}
+
+		public int getExtraNonce() {
+			return stored ? store.getExtraNonce(index) : extraNonce;
+		}
+
+		public long getTimestamp() {
+			return stored ? store.getTimestamp(index) : timestamp;
 		}
 		
-		public String getHash() {
-			return hash;
+		public BlockHash getHash() {
+			return stored ? store.getHash(index) : hash;
 		}
 		
-		public void setHash(String hash) {
+		public void setHash(BlockHash hash) {
+			if(stored) throw new IllegalStateException("The hash of a stored block can not change.");
 			this.hash = hash;
 		}
 		
@@ -67,85 +408,145 @@ public class BlockChain {
 			return index;
 		}
 		
-		public String getInstruction() {
-			return instruction;
+		public Instruction getInstruction() {
+			return stored ? store.getInstruction(index) : instruction;
 		}
 		
-		public String calculateHash() {  //calculates a valid hash according to zeros 
-			
-			int nonce = 0;
-			String comb = getIndex() + getInstruction() + getPrevHash();
-			String hash = sha256(comb + nonce);
+		public BlockHash calculateHash() {  //calculates a valid hash according to zeros 
 			
-			while(!validHash(hash)) {
-				nonce++;
-				hash = sha256(comb + nonce);
+			MiningJob job = new MiningJob(getZeros(), miningTimeout);
+			currentJob = job;
+			/*close() may have looked for the job to cancel before it was published*/
+			if(closed) job.cancel();
+			try {
+				DataPair<Long, BlockHash> aux = miner.mine(hasher, getHeader(), getZeros(), job);
+				/*every nonce failed, change the header and start over*/
+				while (aux == null) {
+					extraNonce++;
+					aux = miner.mine(hasher, getHeader(), getZeros(), job);
+				}
+				this.nonce = aux.getElement1();
+				return aux.getElement2();
+			} finally {
+				job.finish();
 			}
-			
-			this.nonce = nonce;
-			return hash;
 		}
 		
-		public String calculateHashNoNonce() {  //calculates hash of Block with current nonce and data.
+		public BlockHash calculateHashNoNonce() {  //calculates hash of Block with current nonce and data.
 		
-			String combination = getIndex() + getInstruction() + getPrevHash() + getNonce();
-			return sha256(combination);
-		}		
-		private boolean validHash(String hash) {
-
-			boolean valid = true;
-			for(int i = 0 ; i < getZeros() ; i++) {
-				if(hash.charAt(i) != '0')
-					valid = false;
-			}
-			
-			return valid;
+			return Miner.hash(hasher, getHeader(), getNonce());
 		}
-		
-		private String sha256(String base) {
 
-			try	{
-				
-		        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-		        byte[] hash = digest.digest(base.getBytes("UTF-8"));
-		        StringBuffer hexString = new StringBuffer();
-
-		        	for (int i = 0; i < hash.length; i++) {
-		        		String hex = Integer.toHexString(0xff & hash[i]);
-		        			if(hex.length() == 1) hexString.append('0');
-		        				hexString.append(hex);
-		        	}
-		        return hexString.toString();
-		        
-		    } catch(Exception ex){
-		       throw new RuntimeException(ex);
-		    }
-			
+		/**
+		 * @return every field of the block that is hashed, except the nonce: the index, the encoded
+		 * instruction, the 32 raw bytes of the previous hash, the timestamp and the extra nonce, all in binary.
+		 */
+		private byte[] getHeader() {
+			Instruction instruction = getInstruction();
+			int length = instruction.length();
+			byte[] ret = new byte[4 + length + BlockHash.LENGTH + 8 + 4];
+			ByteBuffer header = ByteBuffer.wrap(ret);
+			header.putInt(getIndex());
+			instruction.writeTo(ret, 4);
+			getPrevHash().writeTo(ret, 4 + length);
+			header.position(4 + length + BlockHash.LENGTH);
+			header.putLong(getTimestamp());
+			header.putInt(getExtraNonce());
+			return ret;
 		}
 
 		public void setinstruction(String data){
-			this.instruction = data;
+			if(stored) store.setInstruction(index, Instruction.data(data));
+			else this.instruction = Instruction.data(data);
 		}
 
 		public String toString() {
-			String ret = "[ " + "index:" + index + "/nonce: " + nonce;
-			ret += "/instruction: " + instruction + "]";
-			return ret;
+			StringBuilder ret = new StringBuilder();
+			try {
+				appendTo(ret);
+			} catch (IOException e) {
+				/*a StringBuilder does not throw*/
+			}
+			return ret.toString();
+		}
+
+		/**
+		 * Writes the same text as toString() without building it first.
+		 */
+		public void appendTo(Appendable out) throws IOException {
+			out.append("[ index:").append(Integer.toString(index)).append("/nonce: ").append(Long.toString(getNonce()));
+			out.append("/instruction: ").append(getInstruction().toString()).append(']');
+		}
+	}
+
+	/**
+	 * View of the block store as a list. get() returns a view of the block, add() appends a copy of the
+	 * fields of a sealed block to the store and set() replaces the instruction of a stored block.
+	 */
+	private class StoredBlocks extends AbstractList<Block> {
+		@Override
+		public Block get(int index) {
+			if(index < 0 || index >= store.size()) throw new IndexOutOfBoundsException("Index: " + index);
+			return new Block(index);
+		}
+
+		@Override
+		public int size() {
+			return store.size();
+		}
+
+		@Override
+		public boolean add(Block block) {
+			try {
+				store.append(block.toRecord());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return true;
+		}
+
+		@Override
+		public Block set(int index, Block block) {
+			Block old = get(index);
+			store.setInstruction(index, block.getInstruction());
+			return old;
 		}
 	}
 
     /**
      * Receives instruction to perform on AVLTree, calls the correct method to excecute it and stores result in new block.
+     * Waits until the new block is sealed.
+     * @param action Method to call
+     * @param number
+     */
+	public void operate(String action, int number){
+		operateAsync(action, number).getElement2().join();
+	}
+
+    /**
+     * Receives instruction to perform on AVLTree and applies it right away. The new block is queued and
+     * mined in the background, after every block that was queued before it.
      * @param action Method to call
      * @param number
+     * Operations and modifications run one at a time, in the order they get the lock of the chain. Readers in
+     * other threads use getVersion(), lookupAt() and the sealed blocks, which never wait for them.
+     * @return a DataPair in which element1 is the success of the operation and element2 completes with the
+     * hash of the new block once it is sealed and added to the chain.
+     * @throws IllegalStateException if a block failed to be sealed and the chain did not undo the operations
+     * of the blocks queued after it yet, see cancelMining().
      */
-	public void operate(String action, int number){  
-        int currentIndex = size();
+	public synchronized DataPair<Boolean, CompletableFuture<BlockHash>> operateAsync(String action, int number){
+		if(halted != null){
+			throw new IllegalStateException("BlockChain is halted, a block could not be sealed and "
+					+ pendingBlocks.get() + " blocks are still failing.", halted);
+		}
+        int currentIndex = nextIndex;
         Boolean success;
-        String instruction;
         switch(action){
-            case "add": success = tree.add(number, currentIndex); break;
-            case "remove": success = tree.remove(number,currentIndex); break;
+            case "add": success = tree.add(number, currentIndex);
+                            versions.add(number, currentIndex); break;
+            case "remove": success = tree.remove(number,currentIndex);
+                            versions.remove(number, currentIndex); break;
             case "lookup": DataPair<Boolean,Set<Integer>> aux = tree.lookup(number);
                             success = aux.getElement1();
                             if(success) {
@@ -156,20 +557,144 @@ public class BlockChain {
                             }break;
             default: throw new IllegalOperationException("not a valid operation to perform");
         }
-        instruction = action + number + success.toString();
-        Block block = new Block(currentIndex, instruction, getLatestBlock().getHash());
-        add(block);
+        nextIndex++;
+        CompletableFuture<BlockHash> sealed = enqueue(new Block(currentIndex, Instruction.of(action, number, success)));
+        int interval = snapshotInterval;
+        if(snapshots != null && interval > 0 && currentIndex % interval == 0){
+        	scheduleSnapshot(currentIndex, sealed);
+        }
+        return new DataPair<>(success, sealed);
+	}
+
+	/**
+	 * Undoes the operations of the blocks that failed to be sealed, so the tree, its versions and the history
+	 * are again the ones of the last block in the chain, and lets the chain take operations again. The failed
+	 * operations are not mined again: they were reported as failed through their futures.
+	 * Called by the sealer once the last failed block left the queue. The tree of the last block is rebuilt
+	 * from its nearest checkpoint in the history without the lock of the chain, which is only taken to put it
+	 * in place, so readers and modify() do not wait for the rebuild.
+	 */
+	private void recover(){
+		int last = store.size() - 1;
+		AVLTree<Integer> recovered = history.get(last).copy();
+		synchronized (this) {
+			/*an operation that saw the chain before it halted queued one more block, which fails and recovers*/
+			if(pendingBlocks.get() > 0) return;
+			tree = recovered;
+			history.removeAfter(last);
+			versions.truncate(last);
+			terminal.printMessage("Blocks " + (last + 1) + " to " + (nextIndex - 1) + " could not be sealed ("
+					+ halted.getMessage() + "), their operations were undone.");
+			nextIndex = last + 1;
+			halted = null;
+		}
+	}
+
+	/**
+	 * Queues a pending block to be sealed once every block before it is in the chain.
+	 * @return future that completes with the hash of the block after it is added.
+	 */
+	private CompletableFuture<BlockHash> enqueue(final Block block){
+		final CompletableFuture<BlockHash> sealed = new CompletableFuture<>();
+		pendingBlocks.incrementAndGet();
+		sealer.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				RuntimeException failure = null;
+				try {
+					if(closed) throw new IllegalStateException("BlockChain was closed before the block was sealed.");
+					/*the chain can not skip an index, every block after a failed one fails too*/
+					if(halted != null) throw halted;
+					block.seal(getLatestBlock().getHash());
+					add(block);
+				} catch (RuntimeException e) {
+					halted = e;
+					failure = e;
+				}
+				/*the block stops being pending before anyone waiting for it is released*/
+				if(pendingBlocks.decrementAndGet() == 0 && failure != null && !closed) recover();
+				if(failure != null) sealed.completeExceptionally(failure);
+				else sealed.complete(block.getHash());
+				return null;
+			}
+		});
+		lastSealed = sealed;
+		return sealed;
+	}
+
+	/**
+	 * @param millis time each block may be mined before its proof of work is cancelled, 0 for no limit.
+	 */
+	public void setMiningTimeout(long millis){
+		this.miningTimeout = millis;
+	}
+
+	/**
+	 * @return the proof of work that is running or that ran last, null if no block was mined yet.
+	 */
+	public MiningJob getCurrentJob(){
+		return currentJob;
+	}
+
+	/**
+	 * Cancels the proof of work that is running. The block being mined and every block queued after it fail.
+	 * Once they have all left the queue, the sealer undoes their operations and the chain goes on from the last
+	 * sealed block, before the future of the last of them completes; until then operations throw
+	 * IllegalStateException.
+	 * @return true if there was a job running.
+	 */
+	public boolean cancelMining(){
+		MiningJob job = currentJob;
+		if(job == null || job.isFinished()) return false;
+		job.cancel();
+		return true;
+	}
+
+	/**
+	 * @return amount of blocks whose operation was applied but are not in the chain yet.
+	 */
+	public int getPendingBlocks(){
+		return pendingBlocks.get();
+	}
+
+	/**
+	 * @return index of the oldest block waiting to be sealed or -1 if there is none.
+	 */
+	public int getOldestPendingIndex(){
+		int pending = pendingBlocks.get();
+		return pending == 0 ? -1 : nextIndex - pending;
+	}
+
+	/**
+	 * Waits until every queued block is in the chain, or failed and had its operation undone.
+	 */
+	public void awaitSealed(){
+		try {
+			lastSealed.join();
+		} catch (CompletionException e) {
+			/*the failure was already reported through the future of that block*/
+		}
 	}
 
 	public void add(Block block){
 		blockChain.add(block);
+		merkle.append(block.getHash());
+		hashIndex.put(block.getHash(), block.getIndex());
 	}
 
-	public void modify(int number, String data){
+	/**
+	 * Replaces the instruction of a sealed block with data, so validation finds the block tampered with.
+	 * The tree keeps the operation the block was sealed with, now and when the chain is reopened.
+	 */
+	public synchronized void modify(int number, String data){
 		if(number < 0 || number >= size()){
 			throw new IndexOutOfBoundsException("Index is out of bounds. BlockChain does not contain that block.");
 		}
 		blockChain.get(number).setinstruction(data);
+		synchronized (watermarkLock) {
+			modifications++;
+			verifiedUpTo = Math.min(verifiedUpTo, number - 1);
+		}
 		return;
 	}
 
@@ -177,7 +702,8 @@ public class BlockChain {
 
 	private void createGenesisBlock() {
 		
-		blockChain.add(new Block(0,"No instruction","00000000"));
+		add(new Block(0,Instruction.GENESIS,BlockHash.ZERO));
+		nextIndex = 1;
 	}
 
 
@@ -188,46 +714,227 @@ public class BlockChain {
 	
 	public boolean validateChain() {
 		
-		List<Block> bc = getChain();
-		
-		for(int i=1 ; i < bc.size() ; i++) {
-			
-			Block current = bc.get(i);
-			Block prev = bc.get(i-1);
-			
-			if(!current.getHash().equals(current.calculateHashNoNonce())) {
-				return false;
-			}
-			if(!current.getPrevHash().equals(prev.getHash())){
-				return false;
+		return validate().isValid();
+	}
+
+	/**
+	 * Checks the hash of every block and its link to the previous one, using every core.
+	 * Only the blocks after the verified watermark are checked: blocks are never changed except
+	 * through modify(), which moves the watermark back before the modified block.
+	 * @return valid or the lowest index of an invalid block and the reason.
+	 */
+	public ValidationResult validate() {
+		int from;
+		int generation;
+		synchronized (watermarkLock) {
+			from = verifiedUpTo + 1;
+			generation = modifications;
+		}
+		/*blocks below size() never move, the check reads them straight from the store*/
+		int n = size();
+		ValidationResult result = validate(n, from);
+		synchronized (watermarkLock) {
+			if (generation == modifications) {
+				verifiedUpTo = result.isValid() ? n - 1 : result.getIndex() - 1;
 			}
 		}
-		return true;
+		return result;
+	}
+
+	/**
+	 * Checks every block of the chain, ignoring the verified watermark.
+	 * @return valid or the lowest index of an invalid block and the reason.
+	 */
+	public ValidationResult audit() {
+		synchronized (watermarkLock) {
+			verifiedUpTo = 0;
+		}
+		return validate();
+	}
+
+	/**
+	 * @return index of the last block known to be valid.
+	 */
+	public int getVerifiedIndex() {
+		synchronized (watermarkLock) {
+			return verifiedUpTo;
+		}
+	}
+
+	private ValidationResult validate(int n, int from) {
+		return validator.validate(Math.max(from, 1), n, new ChainValidator.BlockCheck() {
+			@Override
+			public String check(int i) {
+				Block current = new Block(i);
+				
+				if(!current.getHash().equals(current.calculateHashNoNonce())) {
+					return "hash does not match the block data";
+				}
+				if(!current.getPrevHash().equals(store.getHash(i-1))){
+					return "previous hash does not match block " + (i-1);
+				}
+				return null;
+			}
+		});
 	}
 
 
 	public int size(){
 		return blockChain.size();
 	}
+
+	/**
+	 * @return hash stored in the block at index.
+	 */
+	public BlockHash getBlockHash(int index){
+		return blockChain.get(index).getHash();
+	}
+
+	/**
+	 * @return index of the block with that hash or -1 if it is not in the chain.
+	 */
+	public int findByHash(BlockHash hash){
+		indexRestoredBlocks();
+		return hashIndex.find(hash);
+	}
+
+	/**
+	 * @return index of the block whose previous hash is the given one, the block that follows the block
+	 * with that hash, or -1 if it is not in the chain.
+	 */
+	public int findByPrevHash(BlockHash prevHash){
+		/*the genesis block points to no block*/
+		if(prevHash.equals(BlockHash.ZERO)) return 0;
+		indexRestoredBlocks();
+		int index = hashIndex.find(prevHash);
+		if(index < 0 || index + 1 >= size()) return -1;
+		/*a block always points to the one before it, the check only guards against a reused hash*/
+		return store.getPrevHash(index + 1).equals(prevHash) ? index + 1 : -1;
+	}
+
+	/**
+	 * Searches for key in the tree as it was after the block at blockIndex, without rebuilding that tree.
+	 * @return a DataPair in which element1 is true if key was in the tree and element2 is the index of the last
+	 * block up to blockIndex that added its node or changed its children, or null if it was not found.
+	 */
+	public DataPair<Boolean, Integer> lookupAt(int key, int blockIndex){
+		if(blockIndex < 0 || blockIndex >= versions.getBaseIndex()) return versions.lookupAt(key, blockIndex);
+		/*before the snapshot the chain was restored from, the tree of that block is rebuilt*/
+		DataPair<Boolean, Set<Integer>> aux = getTreeAt(blockIndex).lookup(key);
+		if(!aux.getElement1()) return new DataPair<>(false, null);
+		int last = -1;
+		for(int index : aux.getElement2()) last = Math.max(last, index);
+		return new DataPair<>(true, last);
+	}
+
+	/**
+	 * @return the tree as it was after the sealed block at index, rebuilt from the nearest checkpoint if needed.
+	 * It must not be modified.
+	 */
+	public AVLTree<Integer> getTreeAt(int index){
+		if(index < 0 || index >= size()) throw new IndexOutOfBoundsException("Block " + index + " is not sealed");
+		return history.get(index);
+	}
+
+	/**
+	 * @return Merkle root over the hashes of every block in the chain, in order.
+	 */
+	public BlockHash getMerkleRoot(){
+		return merkle.getRoot();
+	}
+
+	/**
+	 * @return proof that the block at index is part of the chain with the current Merkle root.
+	 */
+	public MerkleProof proveBlock(int index){
+		return merkle.prove(index);
+	}
+
+	/**
+	 * @return proof that the blocks in [from, to] are part of the chain with the current Merkle root.
+	 */
+	public MerkleProof proveRange(int from, int to){
+		return merkle.proveRange(from, to);
+	}
 	public Block getLatestBlock() {
 
 		return blockChain.get(size() - 1);
 	}
 
+	/**
+	 * Writes the block at index as "[ index:i/nonce: n/instruction: x]".
+	 */
+	public void appendBlock(Appendable out, int index) throws IOException {
+		blockChain.get(index).appendTo(out);
+	}
+
+	/**
+	 * @return every block of the chain. Use a ChainRenderer to show part of a long chain.
+	 */
 	@Override
 	public String toString(){
-		String ret = new String();
-		int i = 0;
-		for(Block block: blockChain){
-			ret += block.toString() + "-->";
-			i++;
-			if(i%4 == 0) ret += "\n";
+		StringBuilder ret = new StringBuilder();
+		try {
+			new ChainRenderer(this).renderRange(ret, 0, size());
+		} catch (IOException e) {
+			/*a StringBuilder does not throw*/
 		}
-		return ret;
+		return ret.toString();
 
 	}
 
+	/**
+	 * Stops the mining workers of this chain and closes its store, writing it to disk if it is a log.
+	 * The block being mined is cancelled and the ones still queued fail without being mined; every pending
+	 * future completes exceptionally before the store is closed.
+	 */
+	public void close(){
+		closed = true;
+		sealer.shutdown();
+		cancelMining();
+		try {
+			sealer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		miner.shutdown();
+		if(snapshotWriter != null){
+			/*snapshots already queued are still written*/
+			snapshotWriter.shutdown();
+			try {
+				snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			store.close();
+			merkle.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	protected void showInsider(){
-		TreePrinter.print(tree.getRoot());
+		TreePrinter.print(getVersion().getRoot());
+	}
+
+	/**
+	 * Prints the tree as it was after the sealed block at index.
+	 */
+	protected void showInsiderAt(int index){
+		TreePrinter.print(getTreeAt(index).getRoot());
+	}
+
+	/**
+	 * Prints the subtree of key.
+	 * @param levels amount of levels drawn, the deeper ones are only counted.
+	 * @return false if key is not in the tree.
+	 */
+	protected boolean showInsider(int key, int levels){
+		PrintableNode node = getVersion().getSubtree(key);
+		if(node == null) return false;
+		TreePrinter.print(node, levels);
+		return true;
 	}
 }
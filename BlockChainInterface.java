@@ -1,3 +1,4 @@
+package chainpackage;
 
 
 /**
@@ -9,9 +10,9 @@ public interface BlockChainInterface<T> {
      * contenga la data, el metodo se encarga de completar
      * los campos un vincularlo a la lista.
      */
-    boolean addBlock(BlockInterface block);
+    boolean addBlock(BlockInterface<T> block);
 
-    BlockInterface remove(int index);
+    BlockInterface<T> remove(int index);
 
     boolean isInAVL(T elem);
 
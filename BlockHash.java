@@ -0,0 +1,116 @@
+package chainpackage;
+
+/**
+ * 32 byte hash of a block kept as four longs. Comparing two hashes takes four word compares
+ * and the hexadecimal form is only built when the hash is displayed.
+ */
+public final class BlockHash {
+    public static final int LENGTH = 32;
+
+    /** Hash that the genesis block points to. */
+    public static final BlockHash ZERO = new BlockHash(0, 0, 0, 0);
+
+    private final long h0;
+    private final long h1;
+    private final long h2;
+    private final long h3;
+
+    public BlockHash(long h0, long h1, long h2, long h3) {
+        this.h0 = h0;
+        this.h1 = h1;
+        this.h2 = h2;
+        this.h3 = h3;
+    }
+
+    /**
+     * @param bytes digest of at least 32 bytes, big endian. Only the first 32 are used.
+     */
+    public static BlockHash fromBytes(byte[] bytes, int offset) {
+        if (bytes.length - offset < LENGTH) {
+            throw new IllegalArgumentException("A block hash needs " + LENGTH + " bytes.");
+        }
+        return new BlockHash(readLong(bytes, offset), readLong(bytes, offset + 8),
+                readLong(bytes, offset + 16), readLong(bytes, offset + 24));
+    }
+
+    public static BlockHash fromBytes(byte[] bytes) {
+        return fromBytes(bytes, 0);
+    }
+
+    /**
+     * @param hex 64 hexadecimal digits.
+     */
+    public static BlockHash fromHex(String hex) {
+        if (hex.length() != 2 * LENGTH) {
+            throw new IllegalArgumentException("A block hash has " + 2 * LENGTH + " hexadecimal digits.");
+        }
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return fromBytes(bytes);
+    }
+
+    private static long readLong(byte[] b, int i) {
+        long ret = 0;
+        for (int k = 0; k < 8; k++) {
+            ret = (ret << 8) | (b[i + k] & 0xff);
+        }
+        return ret;
+    }
+
+    private static void writeLong(long value, byte[] b, int i) {
+        for (int k = 7; k >= 0; k--) {
+            b[i + k] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Writes the 32 bytes of the hash, big endian.
+     */
+    public void writeTo(byte[] out, int offset) {
+        writeLong(h0, out, offset);
+        writeLong(h1, out, offset + 8);
+        writeLong(h2, out, offset + 16);
+        writeLong(h3, out, offset + 24);
+    }
+
+    public byte[] toBytes() {
+        byte[] ret = new byte[LENGTH];
+        writeTo(ret, 0);
+        return ret;
+    }
+
+    /**
+     * @return the i-th group of 8 bytes of the hash, 0 <= i < 4.
+     */
+    public long getWord(int i) {
+        switch (i) {
+            case 0: return h0;
+            case 1: return h1;
+            case 2: return h2;
+            case 3: return h3;
+            default: throw new IndexOutOfBoundsException("A block hash has 4 words.");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlockHash)) return false;
+        BlockHash other = (BlockHash) o;
+        return h0 == other.h0 && h1 == other.h1 && h2 == other.h2 && h3 == other.h3;
+    }
+
+    @Override
+    public int hashCode() {
+        /*the first word of a mined hash starts with zeros, the last one does not*/
+        return (int) (h3 ^ (h3 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Digest.toHex(toBytes());
+    }
+}
@@ -0,0 +1,202 @@
+package chainpackage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Durable append-only log of blocks. Segments are preallocated files mapped in memory: appends
+ * are memory writes, reads of old blocks come straight from the mapped pages and the operating
+ * system is asked to write them to disk once every syncEvery appends.
+ * When the log is opened the last segment is scanned and everything from the first record that does
+ * not check out is erased, so a write torn by a crash is dropped instead of read back.
+ * Instructions replaced by setInstruction are appended to a separate file of rewrites, each one with its
+ * block index and a CRC32, and written to disk before they are visible. The records in the segments never
+ * change once written.
+ */
+public class BlockLog extends SegmentedBlockStore {
+    private static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 16;
+    private static final int DEFAULT_SYNC_EVERY = 64;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String REWRITES = "rewrites.log";
+    /*block index, instruction length and CRC of an entry of the rewrites file*/
+    private static final int REWRITE_OVERHEAD = 12;
+
+    private final Path directory;
+    private final int syncEvery;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private FileChannel rewrites;
+    /*end of the last entry of the rewrites file that checks out*/
+    private long rewritesEnd = 0;
+    private int unsynced = 0;
+
+    /**
+     * Opens the log in directory, creating it if needed.
+     */
+    public BlockLog(Path directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_SYNC_EVERY);
+    }
+
+    /**
+     * @param recordsPerSegment amount of blocks in each segment file.
+     * @param syncEvery appends between two writes to disk.
+     */
+    public BlockLog(Path directory, int recordsPerSegment, int syncEvery) throws IOException {
+        super(recordsPerSegment);
+        this.directory = directory;
+        this.syncEvery = Math.max(1, syncEvery);
+        Files.createDirectories(directory);
+        open();
+        openRewrites();
+    }
+
+    /**
+     * Maps every segment and finds the end of the log.
+     */
+    private void open() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) files.add(file);
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            segments.add(map(file));
+        }
+        if (segments.isEmpty()) {
+            setSize(0);
+            return;
+        }
+        /*every segment before the last one was full and synced before the next was created*/
+        int last = segments.size() - 1;
+        int base = last * recordsPerSegment;
+        MappedByteBuffer buffer = (MappedByteBuffer) segments.get(last);
+        int valid = 0;
+        while (valid < recordsPerSegment && checks(buffer, valid * RECORD_SIZE, base + valid)) {
+            valid++;
+        }
+        /*erase the torn record and anything after it*/
+        for (int i = valid * RECORD_SIZE; i < recordsPerSegment * RECORD_SIZE; i++) {
+            if (buffer.get(i) != 0) buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+        setSize(base + valid);
+    }
+
+    /**
+     * Restores the instructions of the rewrites file, up to the first entry that does not check out, which is
+     * cut off with everything after it.
+     */
+    private void openRewrites() throws IOException {
+        rewrites = FileChannel.open(directory.resolve(REWRITES), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (readFully(header, rewritesEnd)) {
+            int index = header.getInt(0);
+            int length = header.getInt(4);
+            if (length < 1 || length > rewrites.size() - rewritesEnd - REWRITE_OVERHEAD) break;
+            ByteBuffer entry = ByteBuffer.allocate(length + 4);
+            if (!readFully(entry, rewritesEnd + 8)) break;
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, 8);
+            crc.update(entry.array(), 0, length);
+            if (entry.getInt(length) != (int) crc.getValue()) break;
+            /*blocks cut off with a torn tail of the log keep no rewrite*/
+            if (index >= 0 && index < size()) restore(index, Instruction.fromBytes(entry.array(), 0, length));
+            rewritesEnd += REWRITE_OVERHEAD + length;
+        }
+        if (rewrites.size() > rewritesEnd) {
+            rewrites.truncate(rewritesEnd);
+            rewrites.force(false);
+        }
+    }
+
+    /**
+     * @return false if the file ends before buffer is full.
+     */
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = rewrites.read(buffer, position + buffer.position());
+            if (read < 0) return false;
+        }
+        return true;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channels.add(channel);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    protected ByteBuffer newSegment(int first) throws IOException {
+        if (!segments.isEmpty()) ((MappedByteBuffer) segments.get(segments.size() - 1)).force();
+        return map(directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, first, SEGMENT_SUFFIX)));
+    }
+
+    @Override
+    protected void appended() {
+        if (++unsynced >= syncEvery) {
+            ((MappedByteBuffer) segments.get(segments.size() - 1)).force();
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Appends the new instruction to the rewrites file and writes it to disk right away, before it replaces
+     * the old one for the readers.
+     */
+    @Override
+    protected void rewrite(int index, Instruction instruction) throws IOException {
+        byte[] entry = new byte[REWRITE_OVERHEAD + instruction.length()];
+        ByteBuffer out = ByteBuffer.wrap(entry);
+        out.putInt(0, index);
+        out.putInt(4, instruction.length());
+        int end = instruction.writeTo(entry, 8);
+        CRC32 crc = new CRC32();
+        crc.update(entry, 0, end);
+        out.putInt(end, (int) crc.getValue());
+        /*a failed write is overwritten by the next one*/
+        long position = rewritesEnd;
+        while (out.hasRemaining()) {
+            position += rewrites.write(out, position);
+        }
+        rewrites.force(false);
+        rewritesEnd = position;
+    }
+
+    /**
+     * Writes every pending change to disk.
+     */
+    @Override
+    public synchronized void flush() {
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+        rewrites.close();
+    }
+}
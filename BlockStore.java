@@ -0,0 +1,107 @@
+package chainpackage;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Storage of the sealed blocks of a chain, outside of the Java heap.
+ * Blocks are appended in index order and read field by field, so a block can be shown or checked
+ * without building an object for it. Only the instruction of a stored block can change.
+ */
+public interface BlockStore extends Closeable {
+
+    /**
+     * Fields of a stored block.
+     */
+    class Record {
+        private final int index;
+        private final long nonce;
+        private final long timestamp;
+        private final int extraNonce;
+        private final BlockHash hash;
+        private final BlockHash prevHash;
+        private final Instruction instruction;
+
+        public Record(int index, long nonce, long timestamp, int extraNonce, BlockHash hash, BlockHash prevHash,
+                      Instruction instruction) {
+            this.index = index;
+            this.nonce = nonce;
+            this.timestamp = timestamp;
+            this.extraNonce = extraNonce;
+            this.hash = hash;
+            this.prevHash = prevHash;
+            this.instruction = instruction;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getNonce() {
+            return nonce;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getExtraNonce() {
+            return extraNonce;
+        }
+
+        public BlockHash getHash() {
+            return hash;
+        }
+
+        public BlockHash getPrevHash() {
+            return prevHash;
+        }
+
+        public Instruction getInstruction() {
+            return instruction;
+        }
+    }
+
+    /**
+     * @return amount of blocks stored.
+     */
+    int size();
+
+    /**
+     * Adds a block at the end of the store. Its index must be the current size of the store.
+     * @throws IllegalArgumentException if the index is not the next one or the instruction is too long.
+     */
+    void append(Record record) throws IOException;
+
+    /**
+     * Replaces the instruction of a stored block.
+     */
+    void setInstruction(int index, Instruction instruction);
+
+    /**
+     * Reads every field of a block. Safe to call from any thread for indexes below size(), as are the getters.
+     */
+    Record read(int index);
+
+    long getNonce(int index);
+
+    long getTimestamp(int index);
+
+    int getExtraNonce(int index);
+
+    BlockHash getHash(int index);
+
+    BlockHash getPrevHash(int index);
+
+    Instruction getInstruction(int index);
+
+    /**
+     * @return the instruction the block was appended with, even if setInstruction replaced it since.
+     */
+    Instruction getAppendedInstruction(int index);
+
+    /**
+     * Makes every change durable, if the store is.
+     */
+    void flush();
+}
@@ -0,0 +1,69 @@
+package chainpackage;
+
+import java.io.IOException;
+
+/**
+ * Writes the blocks of a chain to an Appendable as they are read, in the format of BlockChain.toString():
+ * every block followed by "-->" and a line break every BLOCKS_PER_LINE blocks.
+ * Only the blocks of the requested window are read, so showing the tail of a chain costs the same
+ * whatever its length. Pass a buffered Writer or a StringBuilder, the renderer appends small pieces.
+ */
+public class ChainRenderer {
+    public static final int BLOCKS_PER_LINE = 4;
+
+    private final BlockChain chain;
+
+    public ChainRenderer(BlockChain chain) {
+        this.chain = chain;
+    }
+
+    /**
+     * Writes the blocks with index in [from, to), clamped to the blocks in the chain.
+     */
+    public void renderRange(Appendable out, int from, int to) throws IOException {
+        from = Math.max(from, 0);
+        to = Math.min(to, chain.size());
+        for (int i = from; i < to; i++) {
+            chain.appendBlock(out, i);
+            out.append("-->");
+            if ((i - from + 1) % BLOCKS_PER_LINE == 0) out.append('\n');
+        }
+    }
+
+    /**
+     * Writes the last blocks of the chain, preceded by a line with the amount of blocks left out.
+     * @param blocks size of the window.
+     */
+    public void renderTail(Appendable out, int blocks) throws IOException {
+        int size = chain.size();
+        int from = Math.max(0, size - blocks);
+        if (from > 0) {
+            out.append("... ").append(Integer.toString(from)).append(" earlier blocks\n");
+        }
+        renderRange(out, from, size);
+    }
+
+    /**
+     * Writes a page of blocks.
+     * @param page number of the page, starting at 0.
+     * @param pageSize blocks per page.
+     */
+    public void renderPage(Appendable out, int page, int pageSize) throws IOException {
+        long from = (long) page * pageSize;
+        if (from >= chain.size()) return;
+        renderRange(out, (int) from, (int) Math.min(from + pageSize, chain.size()));
+    }
+
+    /**
+     * Writes the size of the chain, its queue, its validation watermark, its last hash and its Merkle root,
+     * without reading any block.
+     */
+    public void renderSummary(Appendable out) throws IOException {
+        int size = chain.size();
+        out.append("Blocks: ").append(Integer.toString(size));
+        out.append(" / pending: ").append(Integer.toString(chain.getPendingBlocks()));
+        out.append(" / verified up to: ").append(Integer.toString(chain.getVerifiedIndex())).append('\n');
+        out.append("Last hash: ").append(chain.getBlockHash(size - 1).toString()).append('\n');
+        out.append("Merkle root: ").append(chain.getMerkleRoot().toString()).append('\n');
+    }
+}
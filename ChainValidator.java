@@ -0,0 +1,105 @@
+package chainpackage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates ranges of blocks on several threads. Every block is checked against itself and its
+ * predecessor only, so the range is cut in chunks that are checked independently.
+ * Each chunk is scanned in ascending order and stops at its first failure; chunks that start after
+ * the lowest failure found so far are skipped, so the result is always the lowest invalid index.
+ */
+public class ChainValidator {
+    /*blocks checked on the calling thread, below this splitting costs more than it saves*/
+    private static final int SEQUENTIAL_THRESHOLD = 512;
+    /*chunks per thread, so a thread that finishes early takes work from the others*/
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Check of a single block.
+     */
+    public interface BlockCheck {
+        /**
+         * @param index index of the block to check.
+         * @return null if the block is valid or the reason why it is not.
+         */
+        String check(int index);
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a validator that uses the common pool.
+     */
+    public ChainValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ChainValidator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks the blocks in [from, to).
+     * @return valid or the lowest index that failed the check and its reason.
+     */
+    public ValidationResult validate(int from, int to, final BlockCheck check) {
+        int count = to - from;
+        int threads = pool.getParallelism();
+        if (count <= SEQUENTIAL_THRESHOLD || threads == 1) {
+            for (int i = from; i < to; i++) {
+                String reason = check.check(i);
+                if (reason != null) return ValidationResult.invalid(i, reason);
+            }
+            return ValidationResult.valid();
+        }
+        final AtomicInteger lowest = new AtomicInteger(Integer.MAX_VALUE);
+        final String[] reasons = new String[threads * CHUNKS_PER_THREAD];
+        int chunk = (count + reasons.length - 1) / reasons.length;
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int c = 0; c < reasons.length; c++) {
+            final int slot = c;
+            final int start = from + c * chunk;
+            final int end = Math.min(to, start + chunk);
+            if (start >= end) break;
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    /*stop as soon as a lower block is known to be invalid*/
+                    for (int i = start; i < end && i < lowest.get(); i++) {
+                        String reason = check.check(i);
+                        if (reason != null) {
+                            reasons[slot] = reason;
+                            lowerTo(lowest, i);
+                            return;
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Validation was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Validation failed.", e.getCause());
+            }
+        }
+        int index = lowest.get();
+        if (index == Integer.MAX_VALUE) return ValidationResult.valid();
+        return ValidationResult.invalid(index, reasons[(index - from) / chunk]);
+    }
+
+    private static void lowerTo(AtomicInteger lowest, int index) {
+        int current = lowest.get();
+        while (index < current && !lowest.compareAndSet(current, index)) {
+            current = lowest.get();
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package chainpackage;
+
 public class DataPair<S,T> {
     S element1;
     T element2;
@@ -0,0 +1,85 @@
+package chainpackage;
+
+/**
+ * Hash function state used by the miner. Besides the usual update/digest it can remember its state
+ * after a prefix (mark) and go back to it (restore), so the fixed part of a block is hashed only once.
+ * Instances are not thread safe, every thread gets its own from Hasher.newDigest().
+ */
+public interface Digest {
+
+    /** Amount of bytes of the hashes produced. */
+    int getDigestLength();
+
+    /** Forgets every byte fed so far. */
+    void reset();
+
+    /** Remembers the current state so it can be restored after every attempt. */
+    void mark();
+
+    /** Goes back to the state saved by the last call to mark(). */
+    void restore();
+
+    void update(byte[] data, int offset, int len);
+
+    /** Finishes the hash, writes it in out and resets the digest. */
+    void digest(byte[] out, int offset);
+
+    /**
+     * Checks if the first zeros hexadecimal digits of the hash are 0 without building its String.
+     */
+    static boolean hasLeadingZeros(byte[] hash, int zeros) {
+        int full = zeros >>> 1;
+        for (int i = 0; i < full; i++) {
+            if (hash[i] != 0) return false;
+        }
+        return (zeros & 1) == 0 || (hash[full] & 0xf0) == 0;
+    }
+
+    static String toHex(byte[] hash) {
+        char[] hex = "0123456789abcdef".toCharArray();
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[2 * i] = hex[(hash[i] >>> 4) & 0xf];
+            chars[2 * i + 1] = hex[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Writes the decimal digits of a non negative number at the end of out, the same
+     * characters String.valueOf would produce.
+     * @return amount of digits written. They start at out.length minus this value.
+     */
+    static int writeDecimal(long value, byte[] out) {
+        int i = out.length;
+        do {
+            out[--i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return out.length - i;
+    }
+
+    /**
+     * Adds a non negative amount to the number whose len decimal digits are at the end of digits,
+     * so consecutive nonces do not need a division per digit.
+     * @return the new amount of digits.
+     */
+    static int addDecimal(byte[] digits, int len, long amount) {
+        int i = digits.length - 1;
+        while (amount != 0) {
+            int first = digits.length - len;
+            if (i < first) {
+                digits[i] = '0';
+                len++;
+            }
+            long sum = (digits[i] - '0') + amount % 10;
+            amount /= 10;
+            if (sum >= 10) {
+                sum -= 10;
+                amount++;
+            }
+            digits[i--] = (byte) ('0' + sum);
+        }
+        return len;
+    }
+}
@@ -0,0 +1,41 @@
+package chainpackage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BlockStore in direct memory, for chains that are not written to disk.
+ * The records do not count against the heap and are never moved or scanned by the garbage collector,
+ * so a chain of millions of blocks only costs the heap the views that are alive at a given moment.
+ */
+public class DirectBlockStore extends SegmentedBlockStore {
+    private static final int DEFAULT_RECORDS_PER_SEGMENT = 4096;
+
+    public DirectBlockStore() {
+        this(DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * @param recordsPerSegment amount of blocks in each buffer allocated.
+     */
+    public DirectBlockStore(int recordsPerSegment) {
+        super(recordsPerSegment);
+    }
+
+    @Override
+    protected ByteBuffer newSegment(int first) {
+        return ByteBuffer.allocateDirect(recordsPerSegment * RECORD_SIZE);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Drops the buffers, their memory is released when they are collected.
+     */
+    @Override
+    public synchronized void close() {
+        segments.clear();
+        setSize(0);
+    }
+}
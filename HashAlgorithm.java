@@ -0,0 +1,64 @@
+package chainpackage;
+
+/**
+ * Hash functions shipped with the BlockChain.
+ */
+public enum HashAlgorithm implements Hasher {
+    SHA256("SHA-256") {
+        @Override
+        public Digest newDigest() {
+            return new Sha256();
+        }
+    },
+    BLAKE2S("BLAKE2s-256") {
+        @Override
+        public Digest newDigest() {
+            return new Blake2s();
+        }
+    };
+
+    private final String name;
+    /*digest used by hash(), one per thread*/
+    private final ThreadLocal<Digest> digest = new ThreadLocal<Digest>() {
+        @Override
+        protected Digest initialValue() {
+            return newDigest();
+        }
+    };
+
+    HashAlgorithm(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte[] hash(byte[] data) {
+        Digest d = digest.get();
+        d.reset();
+        d.update(data, 0, data.length);
+        byte[] out = new byte[d.getDigestLength()];
+        d.digest(out, 0);
+        return out;
+    }
+
+    @Override
+    public boolean validate(byte[] hash, int zeros) {
+        return Digest.hasLeadingZeros(hash, zeros);
+    }
+
+    /**
+     * @param name name of the algorithm, as returned by getName().
+     * @return the algorithm with that name.
+     * @throws IllegalArgumentException if there is no algorithm with that name.
+     */
+    public static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name)) return algorithm;
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + name);
+    }
+}
@@ -0,0 +1,91 @@
+package chainpackage;
+
+/**
+ * Open addressing table from block hashes to block indexes.
+ * Each slot keeps the last 8 bytes of a hash and the index of its block, in two primitive arrays, so the
+ * table costs 12 bytes per slot and no object per block. The first bytes are not used: a mined hash starts
+ * with as many zero digits as the difficulty asks for. A match is confirmed against the full hash of the
+ * block, read through BlockHashes, so two hashes that share their last bytes are never confused.
+ * Lookups take a constant amount of probes: slots are found by linear probing and the table doubles
+ * before it is half full.
+ */
+public class HashIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Source of the full hash of a block, used to confirm a match of the last bytes.
+     */
+    public interface BlockHashes {
+        BlockHash get(int index);
+    }
+
+    private final BlockHashes hashes;
+    private long[] suffixes;
+    /*index of the block + 1, 0 for an empty slot*/
+    private int[] indexes;
+    private int size = 0;
+
+    public HashIndex(BlockHashes hashes) {
+        this(hashes, MIN_CAPACITY);
+    }
+
+    /**
+     * @param expected amount of blocks the table holds before it has to grow.
+     */
+    public HashIndex(BlockHashes hashes, int expected) {
+        this.hashes = hashes;
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expected) capacity <<= 1;
+        suffixes = new long[capacity];
+        indexes = new int[capacity];
+    }
+
+    private static int slot(long suffix, int mask) {
+        return (int) (suffix ^ (suffix >>> 32)) & mask;
+    }
+
+    /**
+     * Adds the hash of the block at index.
+     */
+    public synchronized void put(BlockHash hash, int index) {
+        if (2 * (size + 1) > indexes.length) grow();
+        insert(hash.getWord(3), index);
+        size++;
+    }
+
+    private void insert(long suffix, int index) {
+        int mask = indexes.length - 1;
+        int i = slot(suffix, mask);
+        while (indexes[i] != 0) i = (i + 1) & mask;
+        suffixes[i] = suffix;
+        indexes[i] = index + 1;
+    }
+
+    private void grow() {
+        long[] oldSuffixes = suffixes;
+        int[] oldIndexes = indexes;
+        suffixes = new long[2 * oldSuffixes.length];
+        indexes = new int[2 * oldIndexes.length];
+        for (int i = 0; i < oldIndexes.length; i++) {
+            if (oldIndexes[i] != 0) insert(oldSuffixes[i], oldIndexes[i] - 1);
+        }
+    }
+
+    /**
+     * @return index of the block with that hash or -1 if there is none.
+     */
+    public synchronized int find(BlockHash hash) {
+        long suffix = hash.getWord(3);
+        int mask = indexes.length - 1;
+        for (int i = slot(suffix, mask); indexes[i] != 0; i = (i + 1) & mask) {
+            if (suffixes[i] == suffix && hashes.get(indexes[i] - 1).equals(hash)) {
+                return indexes[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -1,9 +1,22 @@
+package chainpackage;
+
 /**
+ * Proof of work hash function of a BlockChain.
  * Created by sswinnen on 21/09/17.
  */
 public interface Hasher {
 
-    public String hash();
-    public boolean validate();
+    /** Name recorded in the chain so it can be validated with the same function. */
+    public String getName();
+
+    /** Creates a digest for the exclusive use of one thread. */
+    public Digest newDigest();
+
+    public byte[] hash(byte[] data);
+
+    /**
+     * @return true if the hash starts with the given amount of hexadecimal zeros.
+     */
+    public boolean validate(byte[] hash, int zeros);
 
-}
\ No newline at end of file
+}
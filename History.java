@@ -1,20 +1,236 @@
+package chainpackage;
 
 
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Created by sswinnen on 21/09/17.
+ * States of the tree after past blocks. A state is rebuilt from the nearest earlier checkpoint by applying
+ * again the operations of the blocks after it. On the way, the state of the last block at a multiple of
+ * interval is kept as a new checkpoint, so checkpoints are taken by the readers that need them and the
+ * thread that adds blocks never copies the tree. The last states asked for are kept in a LRU cache, so
+ * looking at the same block again costs nothing.
+ * Checkpoints and cached states together take at most maxBytes of heap, counting their nodes and the
+ * modIndex sets of the nodes, and a state bigger than that is not kept at all. Over the budget, the least
+ * recently used cached states are dropped first and then the checkpoints closest to their neighbours, so
+ * the ones left stay spread over the whole chain.
+ * The trees returned by get are shared with the history and must not be modified.
  */
-public class History<T> {
-    private HashMap<Integer,AVLTree<T>> history;
-    public void clean(int distance) {
+public class History<T> implements HistoryInterface<T> {
+    private static final int DEFAULT_INTERVAL = 256;
+    private static final int DEFAULT_CACHE_SIZE = 8;
 
+    /**
+     * Applies the operation of a block to a tree, used to rebuild the states between two checkpoints.
+     */
+    public interface Replayer<T> {
+        void apply(AVLTree<T> tree, int index);
     }
 
+    /**
+     * A kept tree and the bytes it was counted for.
+     */
+    private static final class State<T> {
+        private final AVLTree<T> tree;
+        private final long bytes;
+
+        State(AVLTree<T> tree, long bytes) {
+            this.tree = tree;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Comparator<T> cmp;
+    private final Replayer<T> replayer;
+    private final int interval;
+    private final long maxBytes;
+    private final int cacheSize;
+    private final TreeMap<Integer, State<T>> history = new TreeMap<>();
+    /*in access order, the least recently used state first*/
+    private final LinkedHashMap<Integer, State<T>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /*bytes taken by checkpoints and cached states*/
+    private long bytes = 0;
+
+    /**
+     * History that may take an eighth of the heap.
+     */
+    public History(Comparator<T> cmp, Replayer<T> replayer) {
+        this(cmp, replayer, DEFAULT_INTERVAL, Runtime.getRuntime().maxMemory() / 8, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param interval blocks between two checkpoints.
+     * @param maxBytes bytes of heap that checkpoints and cached states may take together, see
+     *                 AVLTree.getBytes().
+     * @param cacheSize amount of rebuilt states kept.
+     */
+    public History(Comparator<T> cmp, Replayer<T> replayer, int interval, long maxBytes, int cacheSize) {
+        this.cmp = cmp;
+        this.replayer = replayer;
+        this.interval = Math.max(1, interval);
+        this.maxBytes = maxBytes;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Keeps a copy of tree as the state after the block at index if there is no checkpoint less than
+     * interval blocks before it, otherwise that state can be rebuilt and nothing is stored.
+     */
+    @Override
     public void add(int index, AVLTree<T> tree) {
+        synchronized (this) {
+            Integer previous = history.floorKey(index);
+            if (previous != null && index < previous + interval) return;
+        }
+        keep(history, index, tree.copy());
+    }
+
+    /**
+     * @return the tree as it was after the block at index, to be read only. The state is rebuilt without
+     * holding the lock of the history, so other readers do not wait for it.
+     */
+    public AVLTree<T> get(int index) {
+        int from = -1;
+        AVLTree<T> base = null;
+        synchronized (this) {
+            State<T> state = cache.get(index);
+            if (state == null) state = history.get(index);
+            if (state != null) return state.tree;
+            /*start from the closest earlier state, checkpoint or cached*/
+            Map.Entry<Integer, State<T>> checkpoint = history.floorEntry(index);
+            if (checkpoint != null) {
+                from = checkpoint.getKey();
+                base = checkpoint.getValue().tree;
+            }
+            for (Map.Entry<Integer, State<T>> entry : cache.entrySet()) {
+                if (entry.getKey() < index && entry.getKey() > from) {
+                    from = entry.getKey();
+                    base = entry.getValue().tree;
+                }
+            }
+        }
+        /*checkpoints and cached states are never modified, copying one needs no lock*/
+        AVLTree<T> ret = base == null ? new AVLTree<T>(cmp) : base.copy();
+        int mark = index - index % interval;
+        for (int i = from + 1; i < index; i++) {
+            replayer.apply(ret, i);
+            if (i == mark) keep(history, i, ret.copy());
+        }
+        replayer.apply(ret, index);
+        if (index == mark) return keep(history, index, ret);
+        return cacheSize > 0 ? keep(cache, index, ret) : ret;
+    }
+
+    /**
+     * Stores tree as the state after the block at index in states, unless it alone is over the budget.
+     * @return the tree to give out, the one already stored for index if another reader got there first.
+     */
+    private AVLTree<T> keep(Map<Integer, State<T>> states, int index, AVLTree<T> tree) {
+        /*the tree is not shared yet, it is measured without the lock*/
+        long size = tree.getBytes();
+        synchronized (this) {
+            State<T> kept = states.get(index);
+            if (kept != null) return kept.tree;
+            if (size > maxBytes) return tree;
+            states.put(index, new State<>(tree, size));
+            bytes += size;
+            if (cache.size() > cacheSize) evictCached();
+            trim();
+        }
+        return tree;
+    }
+
+    /**
+     * Removes the checkpoints that are less than distance blocks after the previous one that is kept.
+     */
+    @Override
+    public synchronized void clean(int distance) {
+        Integer previous = null;
+        for (Iterator<Map.Entry<Integer, State<T>>> it = history.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, State<T>> entry = it.next();
+            if (previous != null && entry.getKey() - previous < distance) {
+                bytes -= entry.getValue().bytes;
+                it.remove();
+            } else {
+                previous = entry.getKey();
+            }
+        }
+    }
+
+    /**
+     * @return amount of checkpoints kept.
+     */
+    @Override
+    public synchronized int getCount() {
+        return history.size();
+    }
+
+    /**
+     * Removes the checkpoint and the cached state of the block at index.
+     * @return true if there was one of them.
+     */
+    @Override
+    public synchronized boolean remove(int index) {
+        State<T> checkpoint = history.remove(index);
+        State<T> cached = cache.remove(index);
+        if (checkpoint != null) bytes -= checkpoint.bytes;
+        if (cached != null) bytes -= cached.bytes;
+        return checkpoint != null || cached != null;
+    }
+
+    /**
+     * Removes the checkpoints and cached states of every block after index.
+     */
+    public synchronized void removeAfter(int index) {
+        for (State<T> checkpoint : history.tailMap(index, false).values()) bytes -= checkpoint.bytes;
+        history.tailMap(index, false).clear();
+        for (Iterator<Map.Entry<Integer, State<T>>> it = cache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, State<T>> entry = it.next();
+            if (entry.getKey() > index) {
+                bytes -= entry.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
 
+    /**
+     * @return bytes taken by checkpoints and cached states.
+     */
+    public synchronized long getBytes() {
+        return bytes;
     }
-    public boolean remove(int index) {
-        return true;
+
+    private void evictCached() {
+        Iterator<State<T>> it = cache.values().iterator();
+        bytes -= it.next().bytes;
+        it.remove();
+    }
+
+    /**
+     * Drops cached states and then checkpoints until the budget is met. The newest checkpoint is kept.
+     */
+    private void trim() {
+        while (bytes > maxBytes && !cache.isEmpty()) {
+            evictCached();
+        }
+        while (bytes > maxBytes && history.size() > 1) {
+            /*the checkpoint whose removal leaves the shortest gap*/
+            Integer drop = null;
+            int shortest = Integer.MAX_VALUE;
+            int previous = -1;
+            Integer current = null;
+            for (Integer next : history.keySet()) {
+                if (current != null && next - previous < shortest) {
+                    shortest = next - previous;
+                    drop = current;
+                }
+                if (current != null) previous = current;
+                current = next;
+            }
+            bytes -= history.remove(drop).bytes;
+        }
     }
 }
@@ -0,0 +1,210 @@
+package chainpackage;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted set of block indexes stored as the differences between consecutive indexes, each one written
+ * in as few bytes as it needs (7 bits per byte, the high bit says another byte follows).
+ * Blocks are added with increasing indexes, so adding one is writing a byte or two at the end. An index
+ * lower than the last one is still accepted, but the set is rewritten to keep it sorted.
+ * Every SKIP indexes the value and position are kept aside, so contains() jumps close to the index
+ * and reads at most SKIP differences instead of the whole set.
+ */
+public class IndexSet extends AbstractSet<Integer> {
+    private static final int SKIP = 32;
+    private static final byte[] EMPTY = new byte[0];
+    private static final int[] NO_SKIPS = new int[0];
+    /*approximate heap bytes of the set object and of the header of an array*/
+    private static final int OBJECT_BYTES = 40;
+    private static final int ARRAY_BYTES = 16;
+
+    private byte[] data = EMPTY;
+    /*bytes of data in use*/
+    private int length = 0;
+    private int size = 0;
+    private int last = 0;
+    /*index number (k+1)*SKIP of the set and the position in data right after it*/
+    private int[] skipValues = NO_SKIPS;
+    private int[] skipOffsets = NO_SKIPS;
+
+    public IndexSet() {
+    }
+
+    /**
+     * @param other set to copy.
+     */
+    public IndexSet(IndexSet other) {
+        data = Arrays.copyOf(other.data, other.length);
+        length = other.length;
+        size = other.size;
+        last = other.last;
+        int skips = skips();
+        skipValues = Arrays.copyOf(other.skipValues, skips);
+        skipOffsets = Arrays.copyOf(other.skipOffsets, skips);
+    }
+
+    private int skips() {
+        return size == 0 ? 0 : (size - 1) / SKIP;
+    }
+
+    @Override
+    public boolean add(Integer index) {
+        return add(index.intValue());
+    }
+
+    /**
+     * @param index block index, not negative.
+     * @return false if it was already in the set.
+     */
+    public boolean add(int index) {
+        if (index < 0) throw new IllegalArgumentException("Negative block index: " + index);
+        if (size > 0 && index <= last) {
+            return index != last && insert(index);
+        }
+        append(index);
+        return true;
+    }
+
+    private void append(int index) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + 5, data.length + (data.length >> 1)));
+        }
+        int delta = size == 0 ? index : index - last;
+        while ((delta & ~0x7f) != 0) {
+            data[length++] = (byte) (delta & 0x7f | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        last = index;
+        size++;
+        if (size > 1 && (size - 1) % SKIP == 0) {
+            int k = (size - 1) / SKIP - 1;
+            if (k == skipValues.length) {
+                skipValues = Arrays.copyOf(skipValues, Math.max(2, 2 * k));
+                skipOffsets = Arrays.copyOf(skipOffsets, Math.max(2, 2 * k));
+            }
+            skipValues[k] = index;
+            skipOffsets[k] = length;
+        }
+    }
+
+    /**
+     * @return approximate bytes of heap taken by the set and its arrays, the shared empty arrays not counted.
+     */
+    public long getBytes() {
+        long bytes = OBJECT_BYTES;
+        if (data != EMPTY) bytes += ARRAY_BYTES + data.length;
+        if (skipValues != NO_SKIPS) bytes += 2 * (ARRAY_BYTES + 4L * skipValues.length);
+        return bytes;
+    }
+
+    /**
+     * Adds an index lower than the last one by writing the whole set again.
+     */
+    private boolean insert(int index) {
+        if (contains(index)) return false;
+        int[] values = new int[size + 1];
+        int n = 0;
+        boolean placed = false;
+        for (Iterator<Integer> it = iterator(); it.hasNext(); ) {
+            int value = it.next();
+            if (!placed && index < value) {
+                values[n++] = index;
+                placed = true;
+            }
+            values[n++] = value;
+        }
+        clear();
+        for (int value : values) {
+            append(value);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    public boolean contains(int index) {
+        if (size == 0 || index > last || index < 0) return false;
+        if (index == last) return true;
+        int value = 0;
+        int offset = 0;
+        /*last skip point not after index*/
+        int k = Arrays.binarySearch(skipValues, 0, skips(), index);
+        if (k >= 0) return true;
+        k = -k - 2;
+        if (k >= 0) {
+            value = skipValues[k];
+            offset = skipOffsets[k];
+        }
+        while (offset < length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += delta;
+            if (value >= index) return value == index;
+        }
+        return false;
+    }
+
+    /**
+     * @return the highest index in the set.
+     */
+    public int getLast() {
+        if (size == 0) throw new NoSuchElementException();
+        return last;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        length = 0;
+        size = 0;
+        last = 0;
+    }
+
+    /**
+     * @return the indexes in increasing order.
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int offset = 0;
+            private int value = 0;
+
+            @Override
+            public boolean hasNext() {
+                return offset < length;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                return value;
+            }
+        };
+    }
+}
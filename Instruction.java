@@ -0,0 +1,175 @@
+package chainpackage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Operation stored in a block, encoded as an opcode instead of text.
+ * An operation on the tree takes five bytes: the opcode with the success flag in its high bit, followed by
+ * the key in big endian. The genesis instruction is the opcode alone and the data written by modify() follows
+ * its opcode as UTF-8. Blocks hash these bytes and replay reads the opcode and key without parsing text,
+ * the readable form is only built by toString().
+ */
+public final class Instruction {
+    public static final byte NONE = 0;
+    public static final byte ADD = 1;
+    public static final byte REMOVE = 2;
+    public static final byte LOOKUP = 3;
+    public static final byte DATA = 4;
+
+    private static final int SUCCESS = 0x80;
+    private static final String[] NAMES = {"none", "add", "remove", "lookup", "data"};
+
+    public static final Instruction GENESIS = new Instruction(NONE, 0, false, null);
+
+    private final byte opcode;
+    private final int key;
+    private final boolean success;
+    /*only used by DATA*/
+    private final byte[] payload;
+
+    private Instruction(byte opcode, int key, boolean success, byte[] payload) {
+        this.opcode = opcode;
+        this.key = key;
+        this.success = success;
+        this.payload = payload;
+    }
+
+    /**
+     * @param action "add", "remove" or "lookup".
+     * @param key key of the tree the action was applied to.
+     * @param success result of the action.
+     * @throws IllegalOperationException if the action is not an operation of the tree.
+     */
+    public static Instruction of(String action, int key, boolean success) {
+        switch (action) {
+            case "add": return new Instruction(ADD, key, success, null);
+            case "remove": return new Instruction(REMOVE, key, success, null);
+            case "lookup": return new Instruction(LOOKUP, key, success, null);
+            default: throw new IllegalOperationException("not a valid operation to perform");
+        }
+    }
+
+    /**
+     * @return an instruction that holds arbitrary data, like the one written by modify().
+     */
+    public static Instruction data(String data) {
+        return new Instruction(DATA, 0, false, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the bytes written by writeTo().
+     * @throws IllegalArgumentException if they are not a valid instruction.
+     */
+    public static Instruction fromBytes(byte[] in, int offset, int length) {
+        if (length < 1) throw new IllegalArgumentException("An instruction has at least one byte.");
+        int opcode = in[offset] & 0x7f;
+        boolean success = (in[offset] & SUCCESS) != 0;
+        switch (opcode) {
+            case NONE:
+                if (length != 1) break;
+                return GENESIS;
+            case ADD:
+            case REMOVE:
+            case LOOKUP:
+                if (length != 5) break;
+                int key = ((in[offset + 1] & 0xff) << 24) | ((in[offset + 2] & 0xff) << 16)
+                        | ((in[offset + 3] & 0xff) << 8) | (in[offset + 4] & 0xff);
+                return new Instruction((byte) opcode, key, success, null);
+            case DATA:
+                return new Instruction(DATA, 0, false, Arrays.copyOfRange(in, offset + 1, offset + length));
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("Malformed instruction with opcode " + opcode + " and " + length + " bytes.");
+    }
+
+    /**
+     * Packs an operation of the tree into a long: opcode in bits 32 to 39, success in bit 40 and the key below.
+     * @throws IllegalStateException if the instruction carries data.
+     */
+    public long toLong() {
+        if (opcode == DATA) throw new IllegalStateException("Data instructions do not fit in a long.");
+        return ((long) opcode << 32) | (success ? 1L << 40 : 0) | (key & 0xffffffffL);
+    }
+
+    public static Instruction fromLong(long packed) {
+        byte opcode = (byte) (packed >>> 32);
+        if (opcode == NONE) return GENESIS;
+        if (opcode < ADD || opcode > LOOKUP) {
+            throw new IllegalArgumentException("Malformed instruction with opcode " + opcode + ".");
+        }
+        return new Instruction(opcode, (int) packed, (packed & (1L << 40)) != 0, null);
+    }
+
+    /**
+     * @return amount of bytes written by writeTo().
+     */
+    public int length() {
+        switch (opcode) {
+            case NONE: return 1;
+            case DATA: return 1 + payload.length;
+            default: return 5;
+        }
+    }
+
+    /**
+     * Writes the encoded instruction.
+     * @return offset after the last byte written.
+     */
+    public int writeTo(byte[] out, int offset) {
+        out[offset] = (byte) (opcode | (success ? SUCCESS : 0));
+        if (opcode == DATA) {
+            System.arraycopy(payload, 0, out, offset + 1, payload.length);
+        } else if (opcode != NONE) {
+            out[offset + 1] = (byte) (key >>> 24);
+            out[offset + 2] = (byte) (key >>> 16);
+            out[offset + 3] = (byte) (key >>> 8);
+            out[offset + 4] = (byte) key;
+        }
+        return offset + length();
+    }
+
+    public byte[] toBytes() {
+        byte[] ret = new byte[length()];
+        writeTo(ret, 0);
+        return ret;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Instruction)) return false;
+        Instruction other = (Instruction) o;
+        return opcode == other.opcode && key == other.key && success == other.success
+                && Arrays.equals(payload, other.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * opcode + key) + (success ? 1 : 0) + Arrays.hashCode(payload);
+    }
+
+    /**
+     * @return "add 5 true", "No instruction" or the data of the instruction.
+     */
+    @Override
+    public String toString() {
+        switch (opcode) {
+            case NONE: return "No instruction";
+            case DATA: return new String(payload, StandardCharsets.UTF_8);
+            default: return NAMES[opcode] + " " + key + " " + success;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package chainpackage;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * AVLTree of int keys that keeps its nodes in parallel primitive arrays instead of one object per node.
+ * Node n is keys[n], left[n], right[n], height[n] and mods[n], NIL stands for an empty child.
+ * Removed nodes go to a free list and are reused by later adds, so a tree that changes size often does
+ * not allocate. Keys are compared as ints, without boxing or a Comparator.
+ * add, remove, the rotations and the indexes recorded in modIndex follow AVLTree step by step, so both
+ * trees end with the same shape and the same modIndex sets after the same operations.
+ */
+public class IntAVLTree {
+    private static final int NIL = -1;
+    /*returned by add when the key is already present*/
+    private static final int DUPLICATE = -2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] left;
+    private int[] right;
+    private int[] height;
+    private IndexSet[] mods;
+    private int root = NIL;
+    /*first free node, the free list is linked through left[]*/
+    private int free = NIL;
+    /*nodes ever allocated, the ones after it were never used*/
+    private int allocated = 0;
+    private int size = 0;
+
+    /*results of the recursion of remove and eliminateMostLeft*/
+    private boolean removed;
+    private int successor;
+
+    public IntAVLTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity amount of nodes the tree holds before its arrays grow.
+     */
+    public IntAVLTree(int capacity) {
+        capacity = Math.max(capacity, 1);
+        keys = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        height = new int[capacity];
+        mods = new IndexSet[capacity];
+    }
+
+    private int newNode(int key, int blockIndex) {
+        int n;
+        if (free != NIL) {
+            n = free;
+            free = left[n];
+        } else {
+            if (allocated == keys.length) grow();
+            n = allocated++;
+        }
+        keys[n] = key;
+        left[n] = NIL;
+        right[n] = NIL;
+        height[n] = 0;
+        if (mods[n] == null) mods[n] = new IndexSet();
+        else mods[n].clear();
+        mods[n].add(blockIndex);
+        size++;
+        return n;
+    }
+
+    private void freeNode(int n) {
+        left[n] = free;
+        free = n;
+        size--;
+    }
+
+    private void grow() {
+        int capacity = 2 * keys.length;
+        keys = Arrays.copyOf(keys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        height = Arrays.copyOf(height, capacity);
+        mods = Arrays.copyOf(mods, capacity);
+    }
+
+    private int heightOf(int n) {
+        return n == NIL ? -1 : height[n];
+    }
+
+    private int getBalance(int n) {
+        if (n == NIL) return 0;
+        return heightOf(left[n]) - heightOf(right[n]);
+    }
+
+    /**
+     * Adds a new element to the tree.
+     * @param key element to add.
+     * @param blockIndex index of the BlockChain's block that has the add operation.
+     * @return true if the element is added or false if it was already present.
+     */
+    public boolean add(int key, int blockIndex) {
+        int aux = add(key, root, blockIndex);
+        if (aux == DUPLICATE) return false;
+        root = aux;
+        return true;
+    }
+
+    private int add(int key, int current, int blockIndex) {
+        int aux;
+        if (current == NIL) {
+            return newNode(key, blockIndex);
+        }
+        if (key < keys[current]) {
+            aux = add(key, left[current], blockIndex);
+            if (aux == DUPLICATE) return DUPLICATE;
+            if (aux != left[current]) mods[current].add(blockIndex);
+            left[current] = aux;
+            height[current] = Math.max(height[current], heightOf(left[current]) + 1);
+        } else if (key > keys[current]) {
+            aux = add(key, right[current], blockIndex);
+            if (aux == DUPLICATE) return DUPLICATE;
+            if (aux != right[current]) mods[current].add(blockIndex);
+            right[current] = aux;
+            height[current] = Math.max(height[current], heightOf(right[current]) + 1);
+        } else {
+            return DUPLICATE;
+        }
+        return balance(current, blockIndex);
+    }
+
+    private int balance(int current, int blockIndex) {
+        int balance = getBalance(current);
+        if (balance > 1) {
+            if (getBalance(left[current]) >= 0) {
+                current = rightRotation(current, blockIndex);
+            } else {
+                left[current] = leftRotation(left[current], blockIndex);
+                current = rightRotation(current, blockIndex);
+            }
+        } else if (balance < -1) {
+            if (getBalance(right[current]) <= 0) {
+                current = leftRotation(current, blockIndex);
+            } else {
+                right[current] = rightRotation(right[current], blockIndex);
+                current = leftRotation(current, blockIndex);
+            }
+        }
+        return current;
+    }
+
+    private int leftRotation(int current, int blockIndex) {
+        int auxright = right[current];
+        right[current] = left[auxright];
+        left[auxright] = current;
+        height[current] = Math.max(heightOf(left[current]) + 1, heightOf(right[current]) + 1);
+        height[auxright] = Math.max(height[auxright], height[current] + 1);
+        mods[current].add(blockIndex);
+        mods[auxright].add(blockIndex);
+        if (right[current] != NIL) mods[right[current]].add(blockIndex);
+        return auxright;
+    }
+
+    private int rightRotation(int current, int blockIndex) {
+        int auxleft = left[current];
+        left[current] = right[auxleft];
+        right[auxleft] = current;
+        height[current] = Math.max(heightOf(left[current]) + 1, heightOf(right[current]) + 1);
+        height[auxleft] = Math.max(height[auxleft], height[current] + 1);
+        mods[current].add(blockIndex);
+        mods[auxleft].add(blockIndex);
+        if (left[current] != NIL) mods[left[current]].add(blockIndex);
+        return auxleft;
+    }
+
+    /**
+     * Removes a key from the tree.
+     * @param key element to be removed.
+     * @param blockIndex index of the BlockChain's block that has the remove operation.
+     * @return true if removal was successful or false otherwise.
+     */
+    public boolean remove(int key, int blockIndex) {
+        root = remove(key, root, blockIndex);
+        return removed;
+    }
+
+    private int remove(int key, int current, int blockIndex) {
+        if (current == NIL) {
+            removed = false;
+            return NIL;
+        }
+        int node;
+        if (key < keys[current]) {
+            node = remove(key, left[current], blockIndex);
+            if (left[current] != node) mods[current].add(blockIndex);
+            left[current] = node;
+        } else if (key > keys[current]) {
+            node = remove(key, right[current], blockIndex);
+            if (right[current] != node) mods[current].add(blockIndex);
+            right[current] = node;
+        } else {
+            current = deleteKey(current, blockIndex);
+            current = balance(current, blockIndex);
+            removed = true;
+            return current;
+        }
+        if (removed) {
+            height[current] = Math.max(heightOf(left[current]) + 1, heightOf(right[current]) + 1);
+            current = balance(current, blockIndex);
+        }
+        return current;
+    }
+
+    /**
+     * @return the node that takes the place of the removed one, NIL if none.
+     */
+    private int deleteKey(int node, int blockIndex) {
+        int ret;
+        if (right[node] == NIL && left[node] == NIL) {
+            ret = NIL;
+        } else if (right[node] == NIL) {
+            ret = left[node];
+        } else if (left[node] == NIL) {
+            ret = right[node];
+        } else {
+            int rest = eliminateMostLeft(right[node], blockIndex);
+            ret = successor;
+            if (ret != right[node]) right[ret] = rest;
+            left[ret] = left[node];
+            height[ret] = Math.max(heightOf(left[ret]) + 1, heightOf(right[ret]) + 1);
+            mods[ret].add(blockIndex);
+        }
+        freeNode(node);
+        return ret;
+    }
+
+    /**
+     * Unlinks the leftmost node of the subtree, left in successor.
+     * @return the new root of the subtree.
+     */
+    private int eliminateMostLeft(int current, int blockIndex) {
+        if (current == NIL) {
+            throw new NoSuccesorInorderException("There was no succesor inorder.");
+        }
+        if (left[current] != NIL) {
+            int aux = eliminateMostLeft(left[current], blockIndex);
+            if (left[current] != aux) mods[current].add(blockIndex);
+            left[current] = aux;
+        } else {
+            successor = current;
+            return right[current];
+        }
+        height[current] = Math.max(heightOf(left[current]) + 1, heightOf(right[current]) + 1);
+        return balance(current, blockIndex);
+    }
+
+    /**
+     * Searches for key in the tree.
+     * @return a DataPair in which element1 is true if key was found and element2 is the set of
+     * indexes of the blocks that modified that node, or null if it was not found.
+     */
+    public DataPair<Boolean, Set<Integer>> lookup(int key) {
+        int current = root;
+        while (current != NIL) {
+            if (key < keys[current]) current = left[current];
+            else if (key > keys[current]) current = right[current];
+            else return new DataPair<Boolean, Set<Integer>>(true, mods[current]);
+        }
+        return new DataPair<>(false, null);
+    }
+
+    public boolean contains(int key) {
+        int current = root;
+        while (current != NIL) {
+            if (key < keys[current]) current = left[current];
+            else if (key > keys[current]) current = right[current];
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return depth of key, 0 for the root, or -1 if it is not in the tree.
+     */
+    public int getLevel(int key) {
+        int current = root;
+        int level = 0;
+        while (current != NIL) {
+            if (key < keys[current]) current = left[current];
+            else if (key > keys[current]) current = right[current];
+            else return level;
+            level++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return height stored in the root, -1 for an empty tree.
+     */
+    public int getHeight() {
+        return heightOf(root);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clearTree() {
+        root = NIL;
+        free = NIL;
+        allocated = 0;
+        size = 0;
+    }
+}
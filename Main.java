@@ -1,3 +1,5 @@
+package chainpackage;
+
 /**
  * Created by sswinnen on 06/10/17.
  */
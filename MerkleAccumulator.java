@@ -0,0 +1,257 @@
+package chainpackage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Append-only Merkle mountain range over the hashes of the blocks of a chain.
+ * The leaves form a list of perfect binary trees, one per bit set in the amount of leaves (the peaks).
+ * The root commits to every block and a contiguous range of blocks is proven with O(log n) hashes,
+ * so a block can be checked against the root without rehashing the chain.
+ * The nodes of each level are kept as 32 byte slots in equally sized buffers, in direct memory here and
+ * in mapped files in MerkleLog, so millions of blocks cost the heap one buffer per segment instead of an
+ * object per node. A level h holds size() >> h nodes and a node never changes once written.
+ */
+public class MerkleAccumulator {
+    private static final int DEFAULT_NODES_PER_SEGMENT = 1 << 10;
+    /*domain tags, so a leaf can never be taken for an inner node or a bagged peak*/
+    private static final byte LEAF = 0;
+    private static final byte NODE = 1;
+    private static final byte PEAK = 2;
+
+    private final Hasher hasher;
+    protected final int nodesPerSegment;
+    /*segments.get(h) holds the nodes of level h, node j is the one over the leaves [j * 2^h, (j + 1) * 2^h)*/
+    private final List<List<ByteBuffer>> segments = new ArrayList<>();
+    private int size = 0;
+
+    public MerkleAccumulator(Hasher hasher) {
+        this(hasher, DEFAULT_NODES_PER_SEGMENT);
+    }
+
+    /**
+     * @param nodesPerSegment amount of nodes in each buffer allocated.
+     */
+    protected MerkleAccumulator(Hasher hasher, int nodesPerSegment) {
+        this.hasher = hasher;
+        this.nodesPerSegment = nodesPerSegment;
+    }
+
+    /**
+     * @param level level of the tree the segment belongs to, 0 for the leaves.
+     * @param index position of the segment in its level.
+     * @return a buffer of nodesPerSegment * BlockHash.LENGTH bytes.
+     */
+    protected ByteBuffer newSegment(int level, int index) throws IOException {
+        return ByteBuffer.allocateDirect(nodesPerSegment * BlockHash.LENGTH);
+    }
+
+    private BlockHash get(int h, int j) {
+        ByteBuffer segment = segments.get(h).get(j / nodesPerSegment);
+        int offset = (j % nodesPerSegment) * BlockHash.LENGTH;
+        return new BlockHash(segment.getLong(offset), segment.getLong(offset + 8), segment.getLong(offset + 16),
+                segment.getLong(offset + 24));
+    }
+
+    private void put(int h, int j, BlockHash node) {
+        ByteBuffer segment = segment(h, j / nodesPerSegment);
+        int offset = (j % nodesPerSegment) * BlockHash.LENGTH;
+        for (int w = 0; w < 4; w++) {
+            segment.putLong(offset + 8 * w, node.getWord(w));
+        }
+    }
+
+    /**
+     * @return segment k of level h, creating it and the ones before it if needed.
+     */
+    private ByteBuffer segment(int h, int k) {
+        while (segments.size() <= h) segments.add(new ArrayList<ByteBuffer>());
+        List<ByteBuffer> level = segments.get(h);
+        try {
+            while (level.size() <= k) level.add(newSegment(h, level.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return level.get(k);
+    }
+
+    /**
+     * Adds the hash of the next block and the nodes it completes.
+     */
+    public synchronized void append(BlockHash blockHash) {
+        BlockHash node = leaf(hasher, blockHash);
+        int j = size;
+        put(0, j, node);
+        int h = 0;
+        /*an odd node is the right child of a pair, so the pair has a parent*/
+        while (j % 2 == 1) {
+            node = node(hasher, NODE, get(h, j - 1), node);
+            j >>= 1;
+            h++;
+            put(h, j, node);
+        }
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Makes the accumulator hold the first size leaves it had, with the nodes already written, for stores
+     * that find their nodes when they are opened or that must go back to an earlier block.
+     */
+    protected synchronized void setSize(int size) {
+        for (int h = 0; size >> h > 0; h++) {
+            segment(h, ((size >> h) - 1) / nodesPerSegment);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Drops the leaves from size on, so the next block appended is block size.
+     */
+    public synchronized void truncate(int size) {
+        if (size < this.size) this.size = size;
+    }
+
+    /**
+     * @return true if the leaf at index is the one of blockHash.
+     */
+    public synchronized boolean hasLeaf(int index, BlockHash blockHash) {
+        return index >= 0 && index < size && get(0, index).equals(leaf(hasher, blockHash));
+    }
+
+    /**
+     * Makes every node appended durable, if the accumulator is.
+     */
+    public void flush() {
+    }
+
+    public void close() throws IOException {
+    }
+
+    /**
+     * @return hash that commits to every block appended so far, BlockHash.ZERO if there is none.
+     */
+    public synchronized BlockHash getRoot() {
+        List<BlockHash> peaks = new ArrayList<>();
+        int n = size();
+        int offset = 0;
+        for (int h = 30; h >= 0; h--) {
+            if ((n & (1 << h)) != 0) {
+                peaks.add(get(h, offset >> h));
+                offset += 1 << h;
+            }
+        }
+        return bag(hasher, peaks);
+    }
+
+    /**
+     * @return proof that the block at index is part of the chain.
+     */
+    public MerkleProof prove(int index) {
+        return proveRange(index, index);
+    }
+
+    /**
+     * @return proof that the blocks in [from, to] are part of the chain, checked against getRoot().
+     */
+    public synchronized MerkleProof proveRange(int from, int to) {
+        int n = size();
+        if (from < 0 || to >= n || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + "] is not in the accumulator.");
+        }
+        List<BlockHash> hashes = new ArrayList<>();
+        int offset = 0;
+        for (int h = 30; h >= 0; h--) {
+            if ((n & (1 << h)) != 0) {
+                collect(h, offset >> h, from, to, hashes);
+                offset += 1 << h;
+            }
+        }
+        return new MerkleProof(n, from, to, hashes);
+    }
+
+    /**
+     * Adds the nodes under (h, j) that are needed to rebuild it from the leaves in [from, to].
+     */
+    private void collect(int h, int j, int from, int to, List<BlockHash> hashes) {
+        int first = j << h;
+        int last = first + (1 << h) - 1;
+        if (last < from || first > to) {
+            hashes.add(get(h, j));
+        } else if (h > 0) {
+            collect(h - 1, 2 * j, from, to, hashes);
+            collect(h - 1, 2 * j + 1, from, to, hashes);
+        }
+    }
+
+    /**
+     * Rebuilds the root the proof leads to, visiting the nodes in the same order as proveRange.
+     */
+    static BlockHash rootFromProof(Hasher hasher, MerkleProof proof, List<BlockHash> blockHashes) {
+        Iterator<BlockHash> hashes = proof.getHashes().iterator();
+        Iterator<BlockHash> leaves = blockHashes.iterator();
+        List<BlockHash> peaks = new ArrayList<>();
+        int n = proof.getLeafCount();
+        int offset = 0;
+        for (int h = 31 - Integer.numberOfLeadingZeros(Math.max(n, 1)); h >= 0; h--) {
+            if ((n & (1 << h)) != 0) {
+                peaks.add(rebuild(hasher, h, offset >> h, proof.getFrom(), proof.getTo(), hashes, leaves));
+                offset += 1 << h;
+            }
+        }
+        if (hashes.hasNext()) {
+            throw new IndexOutOfBoundsException("The proof has more hashes than the range needs.");
+        }
+        return bag(hasher, peaks);
+    }
+
+    private static BlockHash rebuild(Hasher hasher, int h, int j, int from, int to, Iterator<BlockHash> hashes,
+                                     Iterator<BlockHash> leaves) {
+        int first = j << h;
+        int last = first + (1 << h) - 1;
+        if (last < from || first > to) {
+            if (!hashes.hasNext()) throw new IndexOutOfBoundsException("The proof is missing hashes.");
+            return hashes.next();
+        }
+        if (h == 0) {
+            return leaf(hasher, leaves.next());
+        }
+        BlockHash left = rebuild(hasher, h - 1, 2 * j, from, to, hashes, leaves);
+        BlockHash right = rebuild(hasher, h - 1, 2 * j + 1, from, to, hashes, leaves);
+        return node(hasher, NODE, left, right);
+    }
+
+    /**
+     * Folds the peaks from right to left into a single hash.
+     */
+    private static BlockHash bag(Hasher hasher, List<BlockHash> peaks) {
+        if (peaks.isEmpty()) return BlockHash.ZERO;
+        BlockHash ret = peaks.get(peaks.size() - 1);
+        for (int i = peaks.size() - 2; i >= 0; i--) {
+            ret = node(hasher, PEAK, peaks.get(i), ret);
+        }
+        return ret;
+    }
+
+    private static BlockHash leaf(Hasher hasher, BlockHash blockHash) {
+        byte[] data = new byte[1 + BlockHash.LENGTH];
+        data[0] = LEAF;
+        blockHash.writeTo(data, 1);
+        return BlockHash.fromBytes(hasher.hash(data));
+    }
+
+    private static BlockHash node(Hasher hasher, byte tag, BlockHash left, BlockHash right) {
+        byte[] data = new byte[1 + 2 * BlockHash.LENGTH];
+        data[0] = tag;
+        left.writeTo(data, 1);
+        right.writeTo(data, 1 + BlockHash.LENGTH);
+        return BlockHash.fromBytes(hasher.hash(data));
+    }
+}
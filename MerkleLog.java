@@ -0,0 +1,93 @@
+package chainpackage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * MerkleAccumulator whose nodes live in a file per level mapped in memory, next to the BlockLog of a chain,
+ * so a chain that is opened again does not hash its blocks again.
+ * Nodes never change once written, so the amount of leaves saved by flush() is enough to trust every node
+ * under it after a crash: the nodes appended later are simply written again.
+ */
+public class MerkleLog extends MerkleAccumulator {
+    private static final int DEFAULT_NODES_PER_SEGMENT = 1 << 14;
+    private static final String LEVEL_PREFIX = "merkle-";
+    private static final String LEVEL_SUFFIX = ".dat";
+    private static final String SIZE_FILE = "merkle.size";
+
+    private final Path directory;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> mapped = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens the accumulator in directory with the leaves saved by the last flush(), creating it if needed.
+     */
+    public MerkleLog(Hasher hasher, Path directory) throws IOException {
+        this(hasher, directory, DEFAULT_NODES_PER_SEGMENT);
+    }
+
+    /**
+     * @param nodesPerSegment amount of nodes mapped at a time from the file of a level.
+     */
+    public MerkleLog(Hasher hasher, Path directory, int nodesPerSegment) throws IOException {
+        super(hasher, nodesPerSegment);
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path file = directory.resolve(SIZE_FILE);
+        if (Files.exists(file)) {
+            setSize(Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim()));
+        }
+    }
+
+    @Override
+    protected ByteBuffer newSegment(int level, int index) throws IOException {
+        while (channels.size() <= level) {
+            Path file = directory.resolve(String.format("%s%02d%s", LEVEL_PREFIX, channels.size(), LEVEL_SUFFIX));
+            channels.add(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE));
+        }
+        long length = (long) nodesPerSegment * BlockHash.LENGTH;
+        MappedByteBuffer ret = channels.get(level).map(FileChannel.MapMode.READ_WRITE, index * length, length);
+        mapped.add(ret);
+        return ret;
+    }
+
+    /**
+     * Writes the nodes to disk and then the amount of leaves they cover. The nodes are forced without the
+     * lock of the accumulator, blocks keep being appended meanwhile.
+     */
+    @Override
+    public void flush() {
+        int size = size();
+        for (MappedByteBuffer segment : mapped) {
+            segment.force();
+        }
+        try {
+            Path tmp = directory.resolve(SIZE_FILE + ".tmp");
+            Files.write(tmp, Integer.toString(size).getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, directory.resolve(SIZE_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package chainpackage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Proof that the blocks in [from, to] are part of a chain whose MerkleAccumulator had leafCount leaves.
+ * It holds the hashes of the subtrees that do not overlap the range, in the order they are visited
+ * from left to right, which is O(log n) hashes for any contiguous range.
+ */
+public class MerkleProof {
+    private final int leafCount;
+    private final int from;
+    private final int to;
+    private final List<BlockHash> hashes;
+
+    public MerkleProof(int leafCount, int from, int to, List<BlockHash> hashes) {
+        this.leafCount = leafCount;
+        this.from = from;
+        this.to = to;
+        this.hashes = Collections.unmodifiableList(hashes);
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public List<BlockHash> getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @param hasher hash function of the chain.
+     * @param root root of the accumulator when it had leafCount leaves.
+     * @param blockHashes hashes of the blocks from, from + 1 ... to, computed by the verifier.
+     * @return true if those blocks, at those indexes, lead to the root.
+     */
+    public boolean verify(Hasher hasher, BlockHash root, List<BlockHash> blockHashes) {
+        if (blockHashes.size() != to - from + 1) return false;
+        try {
+            return MerkleAccumulator.rootFromProof(hasher, this, blockHashes).equals(root);
+        } catch (IndexOutOfBoundsException e) {
+            /*the proof does not have as many hashes as the range needs*/
+            return false;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package chainpackage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Proof of work engine shared by the blocks of a BlockChain.
+ * The nonce space is split across a fixed pool of workers: worker w tries the nonces
+ * w, w + workers, w + 2 * workers... so no two workers ever hash the same nonce.
+ * As soon as one of them finds a valid hash every other worker stops.
+ * The hash function is chosen by the caller through a Hasher.
+ * Each worker hashes the prefix of the block once and then only the digits of every nonce it tries,
+ * checking the zeros on the raw digest, so the search loop does not allocate.
+ * Workers report their attempts to the MiningJob and check it for cancellation every BATCH nonces.
+ */
+public class Miner {
+    /*attempts between two checks of the job*/
+    private static final int BATCH = 4096;
+
+    private final int workers;
+    private final ExecutorService pool;
+
+    /*created the first time a chain without a miner of its own is built*/
+    private static final class Shared {
+        private static final Miner INSTANCE = new Miner();
+    }
+
+    /**
+     * @return miner of every available core used by the chains that are not given one, so each of them does
+     * not start a pool of its own. shutdown() does not stop it.
+     */
+    public static Miner shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Creates a miner that uses every available core.
+     */
+    public Miner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers amount of threads that search for a nonce at the same time.
+     */
+    public Miner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A miner needs at least one worker.");
+        }
+        this.workers = workers;
+        /*a single worker mines on the calling thread, no pool is needed*/
+        this.pool = workers == 1 ? null : Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "miner-" + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Searches for a nonce that makes the SHA-256 of prefix + nonce start with the given amount of zeros.
+     * @param prefix data of the block that does not change between attempts.
+     * @param zeros amount of zeros needed at the start of the hash.
+     * @return a DataPair in which element1 is the nonce found and element2 is its hash or null if
+     * no nonce in [0, Long.MAX_VALUE] gives a valid hash.
+     */
+    public DataPair<Long, BlockHash> mine(String prefix, int zeros) {
+        return mine(HashAlgorithm.SHA256, prefix.getBytes(StandardCharsets.UTF_8), zeros, new MiningJob(zeros));
+    }
+
+    /**
+     * Searches for a nonce that makes the hash of prefix + nonce start with the job's amount of zeros.
+     * @param hasher hash function of the chain.
+     * @param prefix bytes of the block that do not change between attempts.
+     * @param zeros amount of zeros needed at the start of the hash.
+     * @param job handle used to cancel the search and to report its progress.
+     * @return a DataPair in which element1 is the nonce found and element2 is its hash or null if
+     * no nonce in [0, Long.MAX_VALUE] gives a valid hash.
+     * @throws MiningCancelledException if the job is cancelled or its deadline passes before a hash is found.
+     */
+    public DataPair<Long, BlockHash> mine(Hasher hasher, byte[] prefix, int zeros, MiningJob job) {
+        DataPair<Long, BlockHash> ret = pool == null
+                ? search(hasher, prefix, zeros, 0, 1, new AtomicBoolean(), job)
+                : mineInPool(hasher, prefix, zeros, job);
+        if (ret == null && job.shouldStop()) {
+            throw new MiningCancelledException(job.isCancelled() ? "Mining was cancelled." : "Mining deadline expired.");
+        }
+        return ret;
+    }
+
+    private DataPair<Long, BlockHash> mineInPool(final Hasher hasher, final byte[] prefix, final int zeros,
+                                              final MiningJob job) {
+        final AtomicBoolean found = new AtomicBoolean();
+        final AtomicReference<DataPair<Long, BlockHash>> result = new AtomicReference<>();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(workers);
+        for (int w = 0; w < workers; w++) {
+            final int start = w;
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        DataPair<Long, BlockHash> aux = search(hasher, prefix, zeros, start, workers, found, job);
+                        if (aux != null) result.compareAndSet(null, aux);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        found.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            found.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mining was interrupted.", e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return result.get();
+    }
+
+    /**
+     * Tries the nonces start, start + step, start + 2 * step... until a valid hash is found,
+     * another worker raises the found flag, the job stops or the nonce would overflow.
+     * @return the nonce and hash found or null if there is none for this worker.
+     */
+    private DataPair<Long, BlockHash> search(Hasher hasher, byte[] prefix, int zeros, long start, long step,
+                                          AtomicBoolean found, MiningJob job) {
+        Digest digest = hasher.newDigest();
+        byte[] hash = new byte[digest.getDigestLength()];
+        byte[] digits = new byte[20];
+        digest.update(prefix, 0, prefix.length);
+        digest.mark();
+        int batch = 0;
+        int len = Digest.writeDecimal(start, digits);
+        /*the nonce becomes negative once the worker went past Long.MAX_VALUE*/
+        for (long nonce = start; nonce >= 0 && !found.get(); nonce += step) {
+            digest.update(digits, digits.length - len, len);
+            digest.digest(hash, 0);
+            if (hasher.validate(hash, zeros)) {
+                found.set(true);
+                job.addAttempts(batch + 1);
+                return new DataPair<>(nonce, BlockHash.fromBytes(hash));
+            }
+            digest.restore();
+            len = Digest.addDecimal(digits, len, step);
+            if (++batch == BATCH) {
+                job.addAttempts(batch);
+                batch = 0;
+                if (job.shouldStop()) {
+                    found.set(true);
+                    return null;
+                }
+            }
+        }
+        job.addAttempts(batch);
+        return null;
+    }
+
+    /**
+     * Stops the workers of the pool. The miner can not be used afterwards, except the shared one, which
+     * keeps its daemon workers for the other chains.
+     */
+    public void shutdown() {
+        if (this == Shared.INSTANCE) return;
+        if (pool != null) pool.shutdownNow();
+    }
+
+    /**
+     * Hashes prefix followed by the decimal digits of the nonce, the same bytes a worker hashes.
+     * @return hash of a block with that header and nonce.
+     */
+    public static BlockHash hash(Hasher hasher, byte[] prefix, long nonce) {
+        byte[] digits = new byte[20];
+        int len = Digest.writeDecimal(nonce, digits);
+        byte[] data = new byte[prefix.length + len];
+        System.arraycopy(prefix, 0, data, 0, prefix.length);
+        System.arraycopy(digits, digits.length - len, data, prefix.length, len);
+        return BlockHash.fromBytes(hasher.hash(data));
+    }
+}
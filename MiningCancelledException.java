@@ -0,0 +1,9 @@
+package chainpackage;
+
+public class MiningCancelledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public MiningCancelledException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,120 @@
+package chainpackage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handle of the proof of work of one block. It lets another thread cancel the search, puts
+ * a deadline on it and reports how far it got, so a slow block can be told apart from a stuck one.
+ */
+public class MiningJob {
+    private final int zeros;
+    private final long start;
+    /*System.nanoTime() after which the job gives up, Long.MAX_VALUE if it has no deadline*/
+    private final long deadline;
+    private final LongAdder attempts = new LongAdder();
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+
+    /**
+     * Creates a job without deadline.
+     * @param zeros amount of zeros needed at the start of the hash.
+     */
+    public MiningJob(int zeros) {
+        this(zeros, 0);
+    }
+
+    /**
+     * @param zeros amount of zeros needed at the start of the hash.
+     * @param timeoutMillis time the job may run before it is cancelled, 0 or less for no deadline.
+     */
+    public MiningJob(int zeros, long timeoutMillis) {
+        this.zeros = zeros;
+        this.start = System.nanoTime();
+        this.deadline = timeoutMillis > 0 ? start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stops every worker of the job. The mining call throws a MiningCancelledException.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Checked by the workers between batches of attempts.
+     * @return true if the job was cancelled or its deadline has passed.
+     */
+    boolean shouldStop() {
+        return cancelled || isExpired();
+    }
+
+    void addAttempts(long count) {
+        attempts.add(count);
+    }
+
+    void finish() {
+        finished = true;
+    }
+
+    public int getZeros() {
+        return zeros;
+    }
+
+    /**
+     * @return amount of nonces hashed so far by every worker. Workers report in batches.
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * @return hashes per second since the job started.
+     */
+    public double getHashRate() {
+        long elapsed = System.nanoTime() - start;
+        if (elapsed <= 0) return 0;
+        return getAttempts() * 1e9 / elapsed;
+    }
+
+    /**
+     * @return average amount of attempts needed to find a hash with the job's amount of zeros.
+     */
+    public double getExpectedAttempts() {
+        return Math.pow(16, zeros);
+    }
+
+    /**
+     * Every attempt succeeds with the same probability, so the expected remaining work does not
+     * shrink with the attempts already made: it is always the expected attempts at the current rate.
+     * @return expected seconds until a hash is found or infinity if nothing was hashed yet.
+     */
+    public double getEstimatedSecondsRemaining() {
+        double rate = getHashRate();
+        if (rate == 0) return Double.POSITIVE_INFINITY;
+        return getExpectedAttempts() / rate;
+    }
+
+    @Override
+    public String toString() {
+        return "attempts: " + getAttempts() + " / hash rate: " + String.format("%.0f", getHashRate())
+                + " H/s / elapsed: " + getElapsedMillis() / 1000 + " s / expected remaining: "
+                + String.format("%.0f", getEstimatedSecondsRemaining()) + " s";
+    }
+}
@@ -1,4 +1,8 @@
+package chainpackage;
+
 public class NoSuccesorInorderException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
     public NoSuccesorInorderException(String message){
         super(message);
     }
@@ -0,0 +1,500 @@
+package chainpackage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AVLTree whose nodes are never modified. add and remove copy only the nodes on the path to the key
+ * and the ones rotated, every other node is shared with the previous version, so each version costs
+ * O(log n) new nodes. The root after every block that changed the tree is kept, and any of them can
+ * be searched in O(log n) with lookupAt, without rebuilding the tree of that block.
+ * One thread at a time may add and remove. Any amount of threads may read at the same time without locks:
+ * a new version is published by replacing a single volatile reference, and a Version returned by getVersion
+ * keeps showing the same tree however the writer goes on.
+ */
+public class PersistentAVLTree<T> {
+    private static final int INITIAL_VERSIONS = 16;
+
+    private final Comparator<T> cmp;
+    /*versions visible to the readers*/
+    private volatile Versions<T> published = new Versions<>(new int[INITIAL_VERSIONS],
+            new AtomicReferenceArray<Node<T>>(INITIAL_VERSIONS), 0);
+    /*oldest block whose version is kept, see setBase*/
+    private volatile int baseIndex = 0;
+
+    public PersistentAVLTree(Comparator<T> cmp) {
+        this.cmp = cmp;
+    }
+
+    private static final class Node<T> implements PrintableNode {
+        private final T key;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int height;
+        private final int size;
+        /*index of the last block that changed the children of this node, or added it*/
+        private final int modified;
+
+        Node(T key, Node<T> left, Node<T> right, int modified) {
+            this(key, left, right, 1 + Math.max(heightOf(left), heightOf(right)), modified);
+        }
+
+        /*the height is given because, as in AVLTree, a rotation does not always recompute it*/
+        Node(T key, Node<T> left, Node<T> right, int height, int modified) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.height = height;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+            this.modified = modified;
+        }
+
+        @Override
+        public Node<T> getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node<T> getRight() {
+            return right;
+        }
+
+        @Override
+        public String toString() {
+            return key.toString();
+        }
+    }
+
+    /**
+     * Block index of every version and its root, in increasing order of block. The writer fills the slots
+     * after count and then publishes a new Versions, so the first count slots of the arrays never change.
+     */
+    private static final class Versions<T> {
+        private final int[] indexes;
+        private final AtomicReferenceArray<Node<T>> roots;
+        private final int count;
+
+        Versions(int[] indexes, AtomicReferenceArray<Node<T>> roots, int count) {
+            this.indexes = indexes;
+            this.roots = roots;
+            this.count = count;
+        }
+
+        Node<T> rootAt(int blockIndex) {
+            int i = Arrays.binarySearch(indexes, 0, count, blockIndex);
+            /*the newest version created at or before the block*/
+            if (i < 0) i = -i - 2;
+            return i < 0 ? null : roots.get(i);
+        }
+    }
+
+    /**
+     * The tree as it was after a block. It never changes, so it can be read from any thread.
+     */
+    public static final class Version<T> {
+        private final Comparator<T> cmp;
+        private final Node<T> root;
+        private final int blockIndex;
+
+        private Version(Comparator<T> cmp, Node<T> root, int blockIndex) {
+            this.cmp = cmp;
+            this.root = root;
+            this.blockIndex = blockIndex;
+        }
+
+        /**
+         * @return a DataPair in which element1 is true if key is in the tree and element2 is the index of the
+         * last block that added its node or changed its children, or null if it was not found.
+         */
+        public DataPair<Boolean, Integer> lookup(T key) {
+            Node<T> current = root;
+            while (current != null) {
+                int c = cmp.compare(key, current.key);
+                if (c == 0) return new DataPair<>(true, current.modified);
+                current = c < 0 ? current.left : current.right;
+            }
+            return new DataPair<>(false, null);
+        }
+
+        public boolean contains(T key) {
+            return lookup(key).getElement1();
+        }
+
+        /**
+         * Passes the keys between inf and sup, both included, to visitor in increasing order.
+         */
+        public void forEachInRange(T inf, T sup, AVLTree.RangeVisitor<T> visitor) {
+            forEachInRange(root, inf, sup, visitor);
+        }
+
+        private void forEachInRange(Node<T> current, T inf, T sup, AVLTree.RangeVisitor<T> visitor) {
+            if (current == null) return;
+            int low = cmp.compare(inf, current.key);
+            int high = cmp.compare(current.key, sup);
+            if (low < 0) forEachInRange(current.left, inf, sup, visitor);
+            if (low <= 0 && high <= 0) visitor.visit(current.key);
+            if (high < 0) forEachInRange(current.right, inf, sup, visitor);
+        }
+
+        /**
+         * @return the keys between inf and sup, both included, in increasing order.
+         */
+        public List<T> getInRange(T inf, T sup) {
+            final List<T> result = new ArrayList<>();
+            forEachInRange(inf, sup, new AVLTree.RangeVisitor<T>() {
+                @Override
+                public void visit(T key) {
+                    result.add(key);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * @return the node with key, root of the subtree to print, or null if key is not in the tree.
+         */
+        public PrintableNode getSubtree(T key) {
+            Node<T> current = root;
+            while (current != null) {
+                int c = cmp.compare(key, current.key);
+                if (c == 0) return current;
+                current = c < 0 ? current.left : current.right;
+            }
+            return null;
+        }
+
+        /**
+         * @return the root, null if the tree is empty.
+         */
+        public PrintableNode getRoot() {
+            return root;
+        }
+
+        public int size() {
+            return sizeOf(root);
+        }
+
+        /**
+         * @return index of the block this version was asked for, for getVersion() the last block that changed
+         * the tree, -1 if none did.
+         */
+        public int getBlockIndex() {
+            return blockIndex;
+        }
+    }
+
+    private static <T> AtomicReferenceArray<Node<T>> copyOf(AtomicReferenceArray<Node<T>> roots, int length) {
+        AtomicReferenceArray<Node<T>> ret = new AtomicReferenceArray<>(length);
+        for (int i = 0; i < Math.min(length, roots.length()); i++) {
+            ret.lazySet(i, roots.get(i));
+        }
+        return ret;
+    }
+
+    private static int heightOf(Node<?> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Adds key in a new version of the tree.
+     * @param blockIndex index of the BlockChain's block that has the add operation, not lower than the one
+     *                   of the last version.
+     * @return true if the element is added or false if it was already present.
+     */
+    public boolean add(T key, int blockIndex) {
+        checkIndex(blockIndex);
+        Node<T> root = getRoot();
+        Node<T> ret = add(root, key, blockIndex);
+        if (ret == root) return false;
+        publish(ret, blockIndex);
+        return true;
+    }
+
+    /**
+     * Removes key in a new version of the tree.
+     * @param blockIndex index of the BlockChain's block that has the remove operation, not lower than the one
+     *                   of the last version.
+     * @return true if removal was successful or false otherwise.
+     */
+    public boolean remove(T key, int blockIndex) {
+        checkIndex(blockIndex);
+        Node<T> root = getRoot();
+        Node<T> ret = remove(root, key, blockIndex);
+        if (ret == root) return false;
+        publish(ret, blockIndex);
+        return true;
+    }
+
+    private void checkIndex(int blockIndex) {
+        Versions<T> v = published;
+        if (v.count > 0 && blockIndex < v.indexes[v.count - 1]) {
+            throw new IllegalArgumentException("Block " + blockIndex + " is older than the last version of the tree, "
+                    + v.indexes[v.count - 1] + ".");
+        }
+    }
+
+    /**
+     * Records root as the tree after the block at blockIndex.
+     */
+    private void publish(Node<T> root, int blockIndex) {
+        Versions<T> v = published;
+        int[] indexes = v.indexes;
+        AtomicReferenceArray<Node<T>> roots = v.roots;
+        int count = v.count;
+        if (count > 0 && indexes[count - 1] == blockIndex) {
+            /*a second operation of the same block replaces its root, in a copy so the published arrays do not change*/
+            count--;
+            roots = copyOf(roots, roots.length());
+        } else if (count == indexes.length) {
+            indexes = Arrays.copyOf(indexes, 2 * count);
+            roots = copyOf(roots, 2 * count);
+        }
+        indexes[count] = blockIndex;
+        roots.set(count, root);
+        published = new Versions<>(indexes, roots, count + 1);
+    }
+
+    /**
+     * @return the same node if key is already present, else the new root of the subtree.
+     */
+    private Node<T> add(Node<T> current, T key, int blockIndex) {
+        if (current == null) return new Node<>(key, null, null, 0, blockIndex);
+        int c = cmp.compare(key, current.key);
+        if (c < 0) {
+            Node<T> left = add(current.left, key, blockIndex);
+            if (left == current.left) return current;
+            /*as in AVLTree, on the way up of an add the height never goes down*/
+            int height = Math.max(current.height, heightOf(left) + 1);
+            return balance(copy(current, left, current.right, height, blockIndex), blockIndex);
+        } else if (c > 0) {
+            Node<T> right = add(current.right, key, blockIndex);
+            if (right == current.right) return current;
+            int height = Math.max(current.height, heightOf(right) + 1);
+            return balance(copy(current, current.left, right, height, blockIndex), blockIndex);
+        }
+        return current;
+    }
+
+    /**
+     * @return the same node if key is not in the subtree, else the new root of the subtree.
+     */
+    private Node<T> remove(Node<T> current, T key, int blockIndex) {
+        if (current == null) return null;
+        int c = cmp.compare(key, current.key);
+        if (c < 0) {
+            Node<T> left = remove(current.left, key, blockIndex);
+            if (left == current.left) return current;
+            return balance(copy(current, left, current.right, blockIndex), blockIndex);
+        } else if (c > 0) {
+            Node<T> right = remove(current.right, key, blockIndex);
+            if (right == current.right) return current;
+            return balance(copy(current, current.left, right, blockIndex), blockIndex);
+        }
+        /*element found*/
+        return balance(deleteKey(current, blockIndex), blockIndex);
+    }
+
+    /**
+     * @return the node that takes the place of node, only a successor inorder that moves up is marked.
+     */
+    private Node<T> deleteKey(Node<T> node, int blockIndex) {
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node<T> successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        Node<T> right = removeMostLeft(node.right, blockIndex);
+        return new Node<>(successor.key, node.left, right, blockIndex);
+    }
+
+    private Node<T> removeMostLeft(Node<T> current, int blockIndex) {
+        if (current.left == null) return current.right;
+        Node<T> left = removeMostLeft(current.left, blockIndex);
+        return balance(copy(current, left, current.right, blockIndex), blockIndex);
+    }
+
+    /**
+     * New version of node with other children and its height taken from them.
+     */
+    private Node<T> copy(Node<T> node, Node<T> left, Node<T> right, int blockIndex) {
+        return copy(node, left, right, 1 + Math.max(heightOf(left), heightOf(right)), blockIndex);
+    }
+
+    /**
+     * New version of node with other children. It is marked as modified by the block only if a child is
+     * another key or appears or disappears, as AVLTree adds the block to modIndex only when a child is another
+     * node; a child copied with the same key does not count.
+     */
+    private Node<T> copy(Node<T> node, Node<T> left, Node<T> right, int height, int blockIndex) {
+        boolean same = sameKey(node.left, left) && sameKey(node.right, right);
+        return new Node<>(node.key, left, right, height, same ? node.modified : blockIndex);
+    }
+
+    private boolean sameKey(Node<T> a, Node<T> b) {
+        if (a == null || b == null) return a == b;
+        return a == b || cmp.compare(a.key, b.key) == 0;
+    }
+
+    /**
+     * Same node marked as modified by the block, for the subtree a rotation moves to another parent.
+     */
+    private static <T> Node<T> mark(Node<T> node, int blockIndex) {
+        if (node == null || node.modified == blockIndex) return node;
+        return new Node<>(node.key, node.left, node.right, node.height, blockIndex);
+    }
+
+    /*
+     * balance and the rotations take the same decisions, keep the same heights and mark the same nodes as the
+     * ones of AVLTree, so a version has the shape of the AVLTree of its block and the modified block of each
+     * node is the last one in its modIndex: lookupAt answers the same as a lookup in the tree of getTreeAt.
+     */
+    private Node<T> balance(Node<T> current, int blockIndex) {
+        if (current == null) return null;
+        int balance = heightOf(current.left) - heightOf(current.right);
+        if (balance > 1) {
+            Node<T> left = current.left;
+            /*left right*/
+            if (heightOf(left.left) < heightOf(left.right)) {
+                current = new Node<>(current.key, leftRotation(left, blockIndex), current.right, current.height,
+                        current.modified);
+            }
+            return rightRotation(current, blockIndex);
+        } else if (balance < -1) {
+            Node<T> right = current.right;
+            /*right left*/
+            if (heightOf(right.right) < heightOf(right.left)) {
+                current = new Node<>(current.key, current.left, rightRotation(right, blockIndex), current.height,
+                        current.modified);
+            }
+            return leftRotation(current, blockIndex);
+        }
+        return current;
+    }
+
+    private Node<T> leftRotation(Node<T> current, int blockIndex) {
+        Node<T> right = current.right;
+        Node<T> moved = mark(right.left, blockIndex);
+        Node<T> left = new Node<>(current.key, current.left, moved,
+                1 + Math.max(heightOf(current.left), heightOf(moved)), blockIndex);
+        return new Node<>(right.key, left, right.right, Math.max(right.height, left.height + 1), blockIndex);
+    }
+
+    private Node<T> rightRotation(Node<T> current, int blockIndex) {
+        Node<T> left = current.left;
+        Node<T> moved = mark(left.right, blockIndex);
+        Node<T> right = new Node<>(current.key, moved, current.right,
+                1 + Math.max(heightOf(moved), heightOf(current.right)), blockIndex);
+        return new Node<>(left.key, left.left, right, Math.max(left.height, right.height + 1), blockIndex);
+    }
+
+    /**
+     * Starts an empty tree from the nodes of tree, as the version after the block at blockIndex, for a tree
+     * restored from a snapshot whose earlier blocks are not replayed. The versions before blockIndex are not
+     * known: lookupAt and getVersionAt answer for them as if the tree was empty, callers check getBaseIndex().
+     * The version keeps the shape and heights of tree, so the next blocks change it as they change tree, and
+     * each node is marked with the last block in its modIndex set.
+     * @throws IllegalStateException if the tree already has versions.
+     */
+    public void setBase(AVLTree<T> tree, final int blockIndex) {
+        if (published.count > 0) throw new IllegalStateException("The tree already has versions.");
+        Node<T> root = tree.build(new AVLTree.NodeBuilder<T, Node<T>>() {
+            @Override
+            public Node<T> build(T key, Node<T> left, Node<T> right, int height, IndexSet modIndex) {
+                return new Node<>(key, left, right, height, modIndex.isEmpty() ? blockIndex : modIndex.getLast());
+            }
+        });
+        baseIndex = blockIndex;
+        publish(root, blockIndex);
+    }
+
+    /**
+     * @return oldest block whose version is known, 0 unless the tree was started with setBase.
+     */
+    public int getBaseIndex() {
+        return baseIndex;
+    }
+
+    /**
+     * Drops the versions of the blocks after blockIndex, so the newest version is the tree as it was after
+     * that block. The arrays are copied, Versions already returned to readers keep their slots.
+     */
+    public void truncate(int blockIndex) {
+        Versions<T> v = published;
+        int count = v.count;
+        while (count > 0 && v.indexes[count - 1] > blockIndex) count--;
+        if (count == v.count) return;
+        published = new Versions<>(Arrays.copyOf(v.indexes, v.indexes.length), copyOf(v.roots, v.roots.length()),
+                count);
+    }
+
+    /**
+     * @return the root of the newest version, null while the tree is empty.
+     */
+    private Node<T> getRoot() {
+        Versions<T> v = published;
+        return v.count == 0 ? null : v.roots.get(v.count - 1);
+    }
+
+    /**
+     * @return the root of the tree as it was after the block at blockIndex, null if it was empty.
+     */
+    public PrintableNode getRootAt(int blockIndex) {
+        return published.rootAt(blockIndex);
+    }
+
+    /**
+     * @return the newest version of the tree.
+     */
+    public Version<T> getVersion() {
+        Versions<T> v = published;
+        if (v.count == 0) return new Version<>(cmp, null, -1);
+        return new Version<>(cmp, v.roots.get(v.count - 1), v.indexes[v.count - 1]);
+    }
+
+    /**
+     * @return the tree as it was after the block at blockIndex.
+     */
+    public Version<T> getVersionAt(int blockIndex) {
+        return new Version<>(cmp, published.rootAt(blockIndex), blockIndex);
+    }
+
+    /**
+     * Searches for key in the tree as it was after the block at blockIndex.
+     * @return a DataPair in which element1 is true if key was in the tree and element2 is the index of the last
+     * block up to blockIndex that added the node of key or changed its children, or null if it was not found.
+     */
+    public DataPair<Boolean, Integer> lookupAt(T key, int blockIndex) {
+        return getVersionAt(blockIndex).lookup(key);
+    }
+
+    /**
+     * Searches for key in the newest version of the tree.
+     */
+    public DataPair<Boolean, Integer> lookup(T key) {
+        return lookupAt(key, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return amount of keys in the tree after the block at blockIndex.
+     */
+    public int sizeAt(int blockIndex) {
+        return sizeOf(published.rootAt(blockIndex));
+    }
+
+    public int size() {
+        return sizeOf(getRoot());
+    }
+
+    /**
+     * @return amount of versions kept, one per block that changed the tree.
+     */
+    public int getVersionCount() {
+        return published.count;
+    }
+}
@@ -1,3 +1,5 @@
+package chainpackage;
+
 public interface PrintableNode {
 
     /** Get left child */
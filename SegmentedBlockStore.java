@@ -0,0 +1,214 @@
+package chainpackage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * BlockStore made of fixed size records in a list of equally sized buffers, so block i lives at a known
+ * offset of segment i / recordsPerSegment. Subclasses decide where the buffers live.
+ * Every record starts with the CRC32 of the rest of it, so a damaged record can be told apart.
+ * A record is written once and never changes while readers may look at it. setInstruction keeps the new
+ * instruction aside and publishes it with a single put, so a reader sees the old one or the new one whole.
+ */
+public abstract class SegmentedBlockStore implements BlockStore {
+    public static final int RECORD_SIZE = 256;
+
+    /*layout of a record*/
+    private static final int CRC = 0;
+    private static final int INDEX = 4;
+    private static final int NONCE = 8;
+    private static final int TIMESTAMP = 16;
+    private static final int EXTRA_NONCE = 24;
+    private static final int INSTRUCTION_LENGTH = 28;
+    private static final int HASH = 30;
+    private static final int PREV_HASH = HASH + BlockHash.LENGTH;
+    private static final int INSTRUCTION = PREV_HASH + BlockHash.LENGTH;
+
+    /**
+     * Longest encoded instruction, in bytes, that fits in a record. It only limits appends, whose operations
+     * take five bytes: the instructions of setInstruction are kept outside the records and have no limit.
+     */
+    public static final int MAX_INSTRUCTION = RECORD_SIZE - INSTRUCTION;
+
+    protected final int recordsPerSegment;
+    protected final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private volatile int size;
+    /*instructions that replaced the one in the record of a block*/
+    private final ConcurrentHashMap<Integer, Instruction> rewritten = new ConcurrentHashMap<>();
+    /*scratch buffer of the writer, appends are serialized*/
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+
+    protected SegmentedBlockStore(int recordsPerSegment) {
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * @param first index of the first block of the new segment.
+     * @return a zeroed buffer of recordsPerSegment * RECORD_SIZE bytes.
+     */
+    protected abstract ByteBuffer newSegment(int first) throws IOException;
+
+    /**
+     * Called after every append, with the lock of the store held.
+     */
+    protected void appended() {
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    protected void setSize(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public synchronized void append(Record record) throws IOException {
+        if (record.getIndex() != size) {
+            throw new IllegalArgumentException("Block " + record.getIndex() + " can not follow block " + (size - 1) + ".");
+        }
+        if (size == segments.size() * recordsPerSegment) {
+            segments.add(newSegment(size));
+        }
+        write(record);
+        size++;
+        appended();
+    }
+
+    @Override
+    public synchronized void setInstruction(int index, Instruction instruction) {
+        segment(index);
+        try {
+            rewrite(index, instruction);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rewritten.put(index, instruction);
+    }
+
+    /**
+     * Called by setInstruction with the lock of the store held, before the new instruction is visible.
+     * Durable stores record it here.
+     */
+    protected void rewrite(int index, Instruction instruction) throws IOException {
+    }
+
+    /**
+     * Makes instruction the one of block index again without calling rewrite(), for stores that find their
+     * rewrites when they are opened.
+     */
+    protected void restore(int index, Instruction instruction) {
+        rewritten.put(index, instruction);
+    }
+
+    private void write(Record record) {
+        Instruction instruction = record.getInstruction();
+        if (instruction.length() > MAX_INSTRUCTION) {
+            throw new IllegalArgumentException("Instructions stored in a block can not be longer than "
+                    + MAX_INSTRUCTION + " bytes.");
+        }
+        ByteBuffer out = ByteBuffer.wrap(scratch);
+        out.putInt(INDEX, record.getIndex());
+        out.putLong(NONCE, record.getNonce());
+        out.putLong(TIMESTAMP, record.getTimestamp());
+        out.putInt(EXTRA_NONCE, record.getExtraNonce());
+        out.putShort(INSTRUCTION_LENGTH, (short) instruction.length());
+        record.getHash().writeTo(scratch, HASH);
+        record.getPrevHash().writeTo(scratch, PREV_HASH);
+        int end = instruction.writeTo(scratch, INSTRUCTION);
+        for (int i = end; i < RECORD_SIZE; i++) scratch[i] = 0;
+        crc.reset();
+        crc.update(scratch, INDEX, RECORD_SIZE - INDEX);
+        out.putInt(CRC, (int) crc.getValue());
+
+        ByteBuffer target = segments.get(record.getIndex() / recordsPerSegment).duplicate();
+        target.position(offset(record.getIndex()));
+        target.put(scratch);
+    }
+
+    /**
+     * @return whether the record at offset of buffer holds block index and its CRC matches.
+     */
+    protected static boolean checks(ByteBuffer buffer, int offset, int index) {
+        if (buffer.getInt(offset + INDEX) != index) return false;
+        int length = buffer.getShort(offset + INSTRUCTION_LENGTH);
+        if (length < 1 || length > MAX_INSTRUCTION) return false;
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + INDEX);
+        record.limit(offset + RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return buffer.getInt(offset + CRC) == (int) crc.getValue();
+    }
+
+    private ByteBuffer segment(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("The store does not contain block " + index + ".");
+        }
+        return segments.get(index / recordsPerSegment);
+    }
+
+    private int offset(int index) {
+        return (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    @Override
+    public Record read(int index) {
+        return new Record(index, getNonce(index), getTimestamp(index), getExtraNonce(index), getHash(index),
+                getPrevHash(index), getInstruction(index));
+    }
+
+    @Override
+    public long getNonce(int index) {
+        return segment(index).getLong(offset(index) + NONCE);
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        return segment(index).getLong(offset(index) + TIMESTAMP);
+    }
+
+    @Override
+    public int getExtraNonce(int index) {
+        return segment(index).getInt(offset(index) + EXTRA_NONCE);
+    }
+
+    @Override
+    public BlockHash getHash(int index) {
+        return readHash(segment(index), offset(index) + HASH);
+    }
+
+    @Override
+    public BlockHash getPrevHash(int index) {
+        return readHash(segment(index), offset(index) + PREV_HASH);
+    }
+
+    private static BlockHash readHash(ByteBuffer segment, int offset) {
+        return new BlockHash(segment.getLong(offset), segment.getLong(offset + 8), segment.getLong(offset + 16),
+                segment.getLong(offset + 24));
+    }
+
+    @Override
+    public Instruction getInstruction(int index) {
+        Instruction ret = rewritten.get(index);
+        return ret != null ? ret : getAppendedInstruction(index);
+    }
+
+    @Override
+    public Instruction getAppendedInstruction(int index) {
+        ByteBuffer segment = segment(index);
+        int offset = offset(index);
+        byte[] instruction = new byte[segment.getShort(offset + INSTRUCTION_LENGTH)];
+        ByteBuffer in = segment.duplicate();
+        in.position(offset + INSTRUCTION);
+        in.get(instruction);
+        return Instruction.fromBytes(instruction, 0, instruction.length);
+    }
+}
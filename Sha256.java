@@ -0,0 +1,170 @@
+package chainpackage;
+
+/**
+ * SHA-256 digest that can remember its state after hashing a prefix.
+ * The miner hashes the data of a block once, calls mark() and then only feeds the
+ * nonce of every attempt after restore(), so the blocks of the prefix are never compressed twice.
+ * No memory is allocated after construction. Instances are not thread safe.
+ */
+public final class Sha256 implements Digest {
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final int[] state = new int[8];
+    private final int[] w = new int[64];
+    private final byte[] buffer = new byte[64];
+    private int bufferLength;
+    private long length;
+
+    /*state saved by mark()*/
+    private final int[] markedState = new int[8];
+    private final byte[] markedBuffer = new byte[64];
+    private int markedBufferLength;
+    private long markedLength;
+
+    public Sha256() {
+        reset();
+    }
+
+    @Override
+    public int getDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    public void reset() {
+        state[0] = 0x6a09e667;
+        state[1] = 0xbb67ae85;
+        state[2] = 0x3c6ef372;
+        state[3] = 0xa54ff53a;
+        state[4] = 0x510e527f;
+        state[5] = 0x9b05688c;
+        state[6] = 0x1f83d9ab;
+        state[7] = 0x5be0cd19;
+        bufferLength = 0;
+        length = 0;
+    }
+
+    @Override
+    public void mark() {
+        System.arraycopy(state, 0, markedState, 0, 8);
+        System.arraycopy(buffer, 0, markedBuffer, 0, bufferLength);
+        markedBufferLength = bufferLength;
+        markedLength = length;
+    }
+
+    @Override
+    public void restore() {
+        System.arraycopy(markedState, 0, state, 0, 8);
+        System.arraycopy(markedBuffer, 0, buffer, 0, markedBufferLength);
+        bufferLength = markedBufferLength;
+        length = markedLength;
+    }
+
+    public void update(byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int len) {
+        length += len;
+        if (bufferLength > 0) {
+            int n = Math.min(len, 64 - bufferLength);
+            System.arraycopy(data, offset, buffer, bufferLength, n);
+            bufferLength += n;
+            offset += n;
+            len -= n;
+            if (bufferLength < 64) return;
+            compress(buffer, 0);
+            bufferLength = 0;
+        }
+        while (len >= 64) {
+            compress(data, offset);
+            offset += 64;
+            len -= 64;
+        }
+        System.arraycopy(data, offset, buffer, 0, len);
+        bufferLength = len;
+    }
+
+    @Override
+    public void digest(byte[] out, int offset) {
+        long bits = length << 3;
+        buffer[bufferLength++] = (byte) 0x80;
+        if (bufferLength > 56) {
+            while (bufferLength < 64) buffer[bufferLength++] = 0;
+            compress(buffer, 0);
+            bufferLength = 0;
+        }
+        while (bufferLength < 56) buffer[bufferLength++] = 0;
+        for (int i = 0; i < 8; i++) {
+            buffer[56 + i] = (byte) (bits >>> (56 - 8 * i));
+        }
+        compress(buffer, 0);
+        for (int i = 0; i < 8; i++) {
+            int s = state[i];
+            out[offset + 4 * i] = (byte) (s >>> 24);
+            out[offset + 4 * i + 1] = (byte) (s >>> 16);
+            out[offset + 4 * i + 2] = (byte) (s >>> 8);
+            out[offset + 4 * i + 3] = (byte) s;
+        }
+        reset();
+    }
+
+    public byte[] digest() {
+        byte[] out = new byte[DIGEST_LENGTH];
+        digest(out, 0);
+        return out;
+    }
+
+    private void compress(byte[] block, int offset) {
+        int[] w = this.w;
+        for (int i = 0; i < 16; i++) {
+            int j = offset + 4 * i;
+            w[i] = (block[j] << 24) | ((block[j + 1] & 0xff) << 16) | ((block[j + 2] & 0xff) << 8) | (block[j + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            int x = w[i - 15];
+            int y = w[i - 2];
+            int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+            int s1 = Integer.rotateRight(y, 17) ^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        for (int i = 0; i < 64; i++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+}
@@ -0,0 +1,148 @@
+package chainpackage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshots of the AVLTree of a chain, each one tied to the index and hash of the last block applied to it.
+ * A reopened chain loads the newest snapshot that matches its log and only replays the blocks after it.
+ * Every file ends with the CRC32 of its content and is written to a temporary file that is then renamed,
+ * so a crash while writing leaves the previous snapshots untouched.
+ */
+public class SnapshotStore<T> {
+    private static final int MAGIC = 0x41564c53;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    /**
+     * Tree read from a snapshot and the block it was taken at.
+     */
+    public static class Snapshot<T> {
+        private final int index;
+        private final BlockHash tip;
+        private final AVLTree<T> tree;
+
+        private Snapshot(int index, BlockHash tip, AVLTree<T> tree) {
+            this.index = index;
+            this.tip = tip;
+            this.tree = tree;
+        }
+
+        /**
+         * @return index of the last block applied to the tree.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return hash of the last block applied to the tree.
+         */
+        public BlockHash getTip() {
+            return tip;
+        }
+
+        public AVLTree<T> getTree() {
+            return tree;
+        }
+    }
+
+    private final Path directory;
+    private final Comparator<T> cmp;
+    private final AVLTree.KeyCodec<T> codec;
+    /*snapshots kept on disk, older ones are deleted*/
+    private final int keep;
+
+    /**
+     * @param cmp comparator of the trees read.
+     * @param codec writes and reads the keys.
+     * @param keep amount of snapshots kept, at least one.
+     */
+    public SnapshotStore(Path directory, Comparator<T> cmp, AVLTree.KeyCodec<T> codec, int keep) {
+        this.directory = directory;
+        this.cmp = cmp;
+        this.codec = codec;
+        this.keep = Math.max(1, keep);
+    }
+
+    /**
+     * Stores a tree. It must not change while it is written, pass a copy if another thread modifies it.
+     * @param index index of the last block applied to the tree.
+     * @param tip hash of that block.
+     */
+    public synchronized void write(AVLTree<T> tree, int index, BlockHash tip) throws IOException {
+        Path target = directory.resolve(String.format("%s%010d%s", PREFIX, index, SUFFIX));
+        Path tmp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(index);
+            out.write(tip.toBytes());
+            tree.write(out, codec);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        List<Integer> indexes = indexes();
+        for (int i = keep; i < indexes.size(); i++) {
+            Files.deleteIfExists(directory.resolve(String.format("%s%010d%s", PREFIX, indexes.get(i), SUFFIX)));
+        }
+    }
+
+    /**
+     * @return block indexes of the stored snapshots, newest first.
+     */
+    public synchronized List<Integer> indexes() throws IOException {
+        List<Integer> ret = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return ret;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    ret.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    /*not a snapshot of this store*/
+                }
+            }
+        }
+        Collections.sort(ret, Collections.reverseOrder());
+        return ret;
+    }
+
+    /**
+     * @return the snapshot taken at index or null if it is missing or damaged.
+     */
+    public synchronized Snapshot<T> read(int index) throws IOException {
+        Path file = directory.resolve(String.format("%s%010d%s", PREFIX, index, SUFFIX));
+        if (!Files.exists(file)) return null;
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < 4 + 4 + BlockHash.LENGTH + 4) return null;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(data.length - 4);
+        if (in.readInt() != (int) crc.getValue()) return null;
+
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+        if (in.readInt() != MAGIC || in.readInt() != index) return null;
+        byte[] tip = new byte[BlockHash.LENGTH];
+        in.readFully(tip);
+        return new Snapshot<>(index, BlockHash.fromBytes(tip), AVLTree.read(in, cmp, codec));
+    }
+}
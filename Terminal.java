@@ -1,5 +1,13 @@
+package chainpackage;
+
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 /**
@@ -7,6 +15,10 @@ import java.util.Scanner;
  */
 
 public class Terminal {
+    /*blocks shown before every command*/
+    private static final int TAIL_WINDOW = 8;
+
+    private final Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
 
 
     /**
@@ -20,10 +32,17 @@ public class Terminal {
                 boolean isNumber = validateNumber(number);
                 if (isNumber) {
                     int zeros = Integer.parseInt(args[1]);
+                    int threads = readThreads(args);
+                    HashAlgorithm hasher = readHasher(args);
                     if (zeros > 16 || zeros < 4) {
                         System.out.println("Invalid amount of zeros");
+                    } else if (threads < 1) {
+                        System.out.println("Error: Invalid amount of threads");
+                    } else if (hasher == null) {
+                        System.out.println("Error: Invalid hash algorithm");
                     } else {
-                        run(zeros);
+                        String dir = readOption(args, "dir");
+                        run(zeros, threads, hasher, dir == null || dir.isEmpty() ? null : Paths.get(dir));
                     }
                 } else {
                     System.out.println("Error: Invalid number");
@@ -37,6 +56,54 @@ public class Terminal {
     }
 
 
+    /**
+     * Looks for an optional "name value" pair among the arguments that follow the zeros.
+     * @param args array of Strings (main program arguments).
+     * @return the value, null if the option is not given or "" if the arguments are malformed.
+     */
+    private String readOption(String[] args, String name) {
+        if (args.length % 2 != 0) {
+            return "";
+        }
+        for (int i = 2; i < args.length; i += 2) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return null;
+    }
+
+    /**
+     * Reads the optional "threads N" arguments that follow the zeros.
+     * @param args array of Strings (main program arguments).
+     * @return amount of mining threads, every available core if not given or -1 if the argument is invalid.
+     */
+    private int readThreads(String[] args) {
+        String threads = readOption(args, "threads");
+        if (threads == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        if (!threads.isEmpty() && validateNumber(threads.toCharArray())) {
+            return Integer.parseInt(threads);
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the optional "hash NAME" arguments that follow the zeros.
+     * @param args array of Strings (main program arguments).
+     * @return the hash algorithm, SHA-256 if not given or null if the argument is invalid.
+     */
+    private HashAlgorithm readHasher(String[] args) {
+        String name = readOption(args, "hash");
+        if (name == null) {
+            return HashAlgorithm.SHA256;
+        }
+        try {
+            return HashAlgorithm.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Receives a character array and returns whether it represents an integer or not.
      * @param s char array.
@@ -56,10 +123,34 @@ public class Terminal {
     /**
      * Main loop method. Waits for user input until "exit" is entered. If this happens the program ends.
      * @param zeros amount of zeros needed at the start of block chain hashcode to be considered valid
+     * @param threads amount of threads used to mine each block
+     * @param hasher hash function of the blocks
+     */
+    public void run(int zeros, int threads, Hasher hasher) {
+        run(zeros, threads, hasher, null);
+    }
+
+    /**
+     * Main loop method over a chain stored in a folder, so it survives a restart.
+     * @param zeros amount of zeros needed at the start of block chain hashcode to be considered valid
+     * @param threads amount of threads used to mine each block
+     * @param hasher hash function of the blocks
+     * @param dir folder of the block log or null to keep the chain in memory
      */
-    public void run(int zeros) {
-        BlockChain bc = new BlockChain(zeros,this);
-        System.out.println("Block chain has been successfully created");
+    public void run(int zeros, int threads, Hasher hasher, Path dir) {
+        BlockChain bc;
+        if (dir == null) {
+            bc = new BlockChain(zeros, this, new Miner(threads), hasher);
+            System.out.println("Block chain has been successfully created");
+        } else {
+            try {
+                bc = new BlockChain(zeros, this, new Miner(threads), hasher, dir);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error: The block chain in " + dir + " could not be opened: " + e.getMessage());
+                return;
+            }
+            System.out.println("Block chain has been successfully opened with " + bc.size() + " blocks");
+        }
         boolean exit = false;
         Scanner scanner = new Scanner(System.in);
         String input;
@@ -73,6 +164,8 @@ public class Terminal {
                 readInstruction(input, bc);
             }
         }
+        bc.awaitSealed();
+        bc.close();
 
     }
 
@@ -92,20 +185,88 @@ public class Terminal {
          * then perform the action validate on the block chain and return
          */
         if (action.equals("validate") && (i - 1) == instruction.length()) {
-            System.out.println(bc.validateChain());
+            System.out.println(bc.validate());
+        } else if (action.equals("audit") && (i - 1) == instruction.length()) {
+            System.out.println(bc.audit());
+        } else if (action.equals("status") && (i - 1) == instruction.length()) {
+            printStatus(bc);
+        } else if (action.equals("cancel") && (i - 1) == instruction.length()) {
+            System.out.println(bc.cancelMining() ? "Mining cancelled" : "No block is being mined");
         } else if (action.equals("add") || action.equals("remove") || action.equals("lookup")) {
             String number = getStringUntilChar(chars, i, ' ');
             i += number.length();
             if (i == instruction.length()) {
                 boolean isNumber = validateNumber(number.toCharArray());
                 if (isNumber) {
-                    bc.operate(action, Integer.parseInt(number));
+                    try {
+                        bc.operateAsync(action, Integer.parseInt(number));
+                    } catch (IllegalStateException e) {
+                        System.out.println(e.getMessage());
+                    }
                 } else {
                     System.out.println("Invalid number, try again please.");
                 }
             } else {
                 System.out.println("Invalid action, try again please.");
             }
+        } else if (action.equals("summary") && (i - 1) == instruction.length()) {
+            printSummary(bc);
+        } else if (action.equals("chain")) {
+            String from = getStringUntilChar(chars, i, ' ');
+            i += from.length() + 1;
+            String to = getStringUntilChar(chars, i, ' ');
+            i += to.length();
+            if (i == instruction.length() && !from.isEmpty() && !to.isEmpty()
+                    && validateNumber(from.toCharArray()) && validateNumber(to.toCharArray())) {
+                printRange(bc, Integer.parseInt(from), Integer.parseInt(to) + 1);
+            } else {
+                System.out.println("Invalid range, try again please: chain FROM TO");
+            }
+        } else if (action.equals("tree")) {
+            String key = getStringUntilChar(chars, i, ' ');
+            i += key.length() + 1;
+            String levels = getStringUntilChar(chars, i, ' ');
+            i += levels.length();
+            boolean complete = levels.isEmpty() ? i - 1 == instruction.length() : i == instruction.length();
+            if (levels.isEmpty()) levels = Integer.toString(TreePrinter.DEFAULT_LEVELS);
+            if (complete && !key.isEmpty() && validateNumber(key.toCharArray())
+                    && validateNumber(levels.toCharArray())) {
+                if (!bc.showInsider(Integer.parseInt(key), Integer.parseInt(levels))) {
+                    System.out.println("Element (" + key + ") was not found in AVL Tree");
+                }
+            } else {
+                System.out.println("Invalid arguments, try again please: tree KEY [LEVELS]");
+            }
+        } else if (action.equals("history")) {
+            String key = getStringUntilChar(chars, i, ' ');
+            i += key.length() + 1;
+            String block = getStringUntilChar(chars, i, ' ');
+            i += block.length();
+            if (i == instruction.length() && !key.isEmpty() && !block.isEmpty()
+                    && validateNumber(key.toCharArray()) && validateNumber(block.toCharArray())) {
+                printHistory(bc, Integer.parseInt(key), Integer.parseInt(block));
+            } else {
+                System.out.println("Invalid arguments, try again please: history KEY BLOCK");
+            }
+        } else if (action.equals("past")) {
+            String block = getStringUntilChar(chars, i, ' ');
+            if (i + block.length() == instruction.length() && !block.isEmpty() && validateNumber(block.toCharArray())) {
+                int index = Integer.parseInt(block);
+                if (index < bc.size()) {
+                    bc.showInsiderAt(index);
+                } else {
+                    System.out.println("Block " + index + " is not sealed yet");
+                }
+            } else {
+                System.out.println("Invalid arguments, try again please: past BLOCK");
+            }
+        } else if (action.equals("find")) {
+            String hex = getStringUntilChar(chars, i, ' ');
+            if (i + hex.length() == instruction.length()) {
+                printFind(bc, hex);
+            } else {
+                System.out.println("Invalid action, try again please.");
+            }
         } else if (action.equals("modify")) {
             String number = getStringUntilChar(chars, i, ' ');
             int num = -1;
@@ -126,6 +287,8 @@ public class Terminal {
                                 bc.modify(num, data.toString());
                             } catch (IndexOutOfBoundsException e) {
                                 System.out.println("Invalid index for current block chain, try again please");
+                            } catch (IllegalArgumentException e) {
+                                System.out.println(e.getMessage());
                             }
                         }
                     } else {
@@ -172,15 +335,107 @@ public class Terminal {
         System.out.println(msg);
     }
 
+    /**
+     * Prints how many blocks are still waiting to be mined and the progress of the current one.
+     * @param bc current block chain
+     */
+    public void printStatus(BlockChain bc) {
+        int pending = bc.getPendingBlocks();
+        if (pending == 0) {
+            System.out.println("Every block is sealed. Chain size: " + bc.size());
+        } else {
+            System.out.println("Blocks waiting to be mined: " + pending + " (oldest index: "
+                    + bc.getOldestPendingIndex() + ")");
+        }
+        MiningJob job = bc.getCurrentJob();
+        if (job != null) {
+            System.out.println((job.isFinished() ? "Last block: " : "Mining: ") + job.toString());
+        }
+    }
+
+    /**
+     * Prints the index of the block with the given hash and of the block that follows it.
+     * @param bc current block chain
+     * @param hex hash of the block, 64 hexadecimal digits
+     */
+    public void printFind(BlockChain bc, String hex) {
+        BlockHash hash;
+        try {
+            hash = BlockHash.fromHex(hex);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid hash, try again please.");
+            return;
+        }
+        int index = bc.findByHash(hash);
+        if (index < 0) {
+            System.out.println("No block has that hash");
+            return;
+        }
+        System.out.println("Block " + index);
+        int next = bc.findByPrevHash(hash);
+        if (next >= 0) System.out.println("Followed by block " + next);
+    }
+
+    /**
+     * Prints whether key was in the tree after the given block, and the last block that changed its node.
+     * @param bc current block chain
+     */
+    public void printHistory(BlockChain bc, int key, int block) {
+        DataPair<Boolean, Integer> aux = bc.lookupAt(key, block);
+        if (aux.getElement1()) {
+            System.out.println("Element (" + key + ") was in AVL Tree after block " + block
+                    + ", last modified by block " + aux.getElement2());
+        } else {
+            System.out.println("Element (" + key + ") was not in AVL Tree after block " + block);
+        }
+    }
+
     public void printDashedLine() {
         System.out.println("--------------------------------------------------------------");
         System.out.println();
     }
 
+    /**
+     * Prints the blocks with index in [from, to).
+     * @param bc current block chain
+     */
+    public void printRange(BlockChain bc, int from, int to) {
+        try {
+            new ChainRenderer(bc).renderRange(out, from, to);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the size, queue, watermark, last hash and Merkle root of the chain.
+     * @param bc current block chain
+     */
+    public void printSummary(BlockChain bc) {
+        try {
+            new ChainRenderer(bc).renderSummary(out);
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows the last blocks of the chain and the tree. The whole chain is shown with "chain FROM TO".
+     * @param bc current block chain
+     */
     public void visualReport(BlockChain bc){
         printDashedLine();
         System.out.println("BlockChain:");
-        System.out.println(bc.toString());
+        try {
+            new ChainRenderer(bc).renderTail(out, TAIL_WINDOW);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
         System.out.println();
         System.out.println("AVLTree: ");
         System.out.println();
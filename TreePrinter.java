@@ -1,7 +1,17 @@
+package chainpackage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class TreePrinter {
+    /** Levels drawn by print(root) before the deeper ones are summarized. */
+    public static final int DEFAULT_LEVELS = 5;
+
     /**
      * Print a tree
      *
@@ -10,6 +20,42 @@ public class TreePrinter {
      */
     public static void print(PrintableNode root)
     {
+        print(root, DEFAULT_LEVELS);
+    }
+
+    /**
+     * Print the first levels of a tree to the standard output and a line per deeper level with its amount of nodes.
+     *
+     * @param root
+     *            tree root node, or the node of the subtree to show
+     * @param levels
+     *            amount of levels drawn
+     */
+    public static void print(PrintableNode root, int levels)
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            print(root, levels, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Draw the first levels of a tree and a line per deeper level with its amount of nodes.
+     * Only the drawn levels are kept in memory, the deeper ones are counted without storing them.
+     *
+     * @param root
+     *            tree root node, or the node of the subtree to show
+     * @param levels
+     *            amount of levels drawn
+     * @param out
+     *            destination of the drawing, a buffered writer or a StringBuilder
+     */
+    public static void print(PrintableNode root, int levels, Appendable out) throws IOException
+    {
+        if (root == null || levels < 1) return;
         List<List<String>> lines = new ArrayList<List<String>>();
 
         List<PrintableNode> level = new ArrayList<PrintableNode>();
@@ -20,7 +66,7 @@ public class TreePrinter {
 
         int widest = 0;
 
-        while (nn != 0) {
+        while (nn != 0 && lines.size() < levels) {
             List<String> line = new ArrayList<String>();
 
             nn = 0;
@@ -71,25 +117,18 @@ public class TreePrinter {
                             if (j < line.size() && line.get(j) != null) c = '└';
                         }
                     }
-                    System.out.print(c);
+                    out.append(c);
 
                     // lines and spaces
                     if (line.get(j) == null) {
-                        for (int k = 0; k < perpiece - 1; k++) {
-                            System.out.print(" ");
-                        }
+                        repeat(out, ' ', perpiece - 1);
                     } else {
-
-                        for (int k = 0; k < hpw; k++) {
-                            System.out.print(j % 2 == 0 ? " " : "─");
-                        }
-                        System.out.print(j % 2 == 0 ? "┌" : "┐");
-                        for (int k = 0; k < hpw; k++) {
-                            System.out.print(j % 2 == 0 ? "─" : " ");
-                        }
+                        repeat(out, j % 2 == 0 ? ' ' : '─', hpw);
+                        out.append(j % 2 == 0 ? '┌' : '┐');
+                        repeat(out, j % 2 == 0 ? '─' : ' ', hpw);
                     }
                 }
-                System.out.println();
+                out.append(System.lineSeparator());
             }
 
             // print line of numbers
@@ -101,17 +140,44 @@ public class TreePrinter {
                 int gap2 = (int) Math.floor(perpiece / 2f - f.length() / 2f);
 
                 // a number
-                for (int k = 0; k < gap1; k++) {
-                    System.out.print(" ");
-                }
-                System.out.print(f);
-                for (int k = 0; k < gap2; k++) {
-                    System.out.print(" ");
-                }
+                repeat(out, ' ', gap1);
+                out.append(f);
+                repeat(out, ' ', gap2);
             }
-            System.out.println();
+            out.append(System.lineSeparator());
 
             perpiece /= 2;
         }
+
+        // levels that were not drawn
+        if (nn != 0) {
+            List<Integer> counts = new ArrayList<Integer>();
+            for (PrintableNode n : level) {
+                count(n, 0, counts);
+            }
+            for (int i = 0; i < counts.size(); i++) {
+                out.append("level ").append(Integer.toString(lines.size() + i)).append(": ")
+                        .append(Integer.toString(counts.get(i))).append(" nodes").append(System.lineSeparator());
+            }
+        }
+    }
+
+    private static void repeat(Appendable out, char c, int times) throws IOException
+    {
+        for (int k = 0; k < times; k++) {
+            out.append(c);
+        }
+    }
+
+    /**
+     * Adds the nodes of a subtree to the count of their depth.
+     */
+    private static void count(PrintableNode n, int depth, List<Integer> counts)
+    {
+        if (n == null) return;
+        if (counts.size() == depth) counts.add(0);
+        counts.set(depth, counts.get(depth) + 1);
+        count(n.getLeft(), depth + 1, counts);
+        count(n.getRight(), depth + 1, counts);
     }
 }
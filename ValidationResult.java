@@ -0,0 +1,48 @@
+package chainpackage;
+
+/**
+ * Outcome of validating a BlockChain: either valid or the lowest index of an invalid block and why.
+ */
+public class ValidationResult {
+    private static final ValidationResult VALID = new ValidationResult(-1, null);
+
+    private final int index;
+    private final String reason;
+
+    private ValidationResult(int index, String reason) {
+        this.index = index;
+        this.reason = reason;
+    }
+
+    public static ValidationResult valid() {
+        return VALID;
+    }
+
+    public static ValidationResult invalid(int index, String reason) {
+        return new ValidationResult(index, reason);
+    }
+
+    public boolean isValid() {
+        return reason == null;
+    }
+
+    /**
+     * @return lowest index of an invalid block or -1 if the chain is valid.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return why the block is invalid or null if the chain is valid.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        if (isValid()) return "true";
+        return "false (block " + index + ": " + reason + ")";
+    }
+}
@@ -0,0 +1,142 @@
+package chainpackage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AVLTree and IntAVLTree operations against a java.util.TreeMap holding the same keys.
+ * Keys come from a fixed seed so every run works on the same trees.
+ * The largest sizes need a big heap, for example -jvmArgs -Xmx8g.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AVLTreeBenchmark {
+    /*width of the key interval asked to getInRange*/
+    private static final int RANGE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private AVLTree<Integer> tree;
+    private IntAVLTree intTree;
+    private TreeMap<Integer, Integer> map;
+    private int[] present;
+    private int[] absent;
+    private int next;
+    private int blockIndex;
+
+    @Setup
+    public void setUp() {
+        tree = new AVLTree<>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return o1.compareTo(o2);
+            }
+        });
+        intTree = new IntAVLTree(size);
+        map = new TreeMap<>();
+        Random random = new Random(42);
+        present = new int[size];
+        absent = new int[size];
+        int p = 0;
+        int a = 0;
+        /*even keys go in the trees, odd keys are never present*/
+        while (p < size) {
+            int key = random.nextInt(4 * size);
+            if (tree.add(2 * key, blockIndex)) {
+                intTree.add(2 * key, blockIndex);
+                map.put(2 * key, blockIndex);
+                present[p++] = 2 * key;
+                absent[a++] = 2 * key + 1;
+                blockIndex++;
+            }
+        }
+    }
+
+    private int nextSlot() {
+        next++;
+        if (next == size) next = 0;
+        return next;
+    }
+
+    @Benchmark
+    public DataPair<Boolean, Set<Integer>> avlLookup() {
+        return tree.lookup(present[nextSlot()]);
+    }
+
+    @Benchmark
+    public DataPair<Boolean, Set<Integer>> intAvlLookup() {
+        return intTree.lookup(present[nextSlot()]);
+    }
+
+    @Benchmark
+    public Integer treeMapLookup() {
+        return map.get(present[nextSlot()]);
+    }
+
+    @Benchmark
+    public boolean avlAddRemove() {
+        int key = absent[nextSlot()];
+        tree.add(key, blockIndex++);
+        return tree.remove(key, blockIndex++);
+    }
+
+    @Benchmark
+    public boolean intAvlAddRemove() {
+        int key = absent[nextSlot()];
+        intTree.add(key, blockIndex++);
+        return intTree.remove(key, blockIndex++);
+    }
+
+    @Benchmark
+    public Integer treeMapAddRemove() {
+        int key = absent[nextSlot()];
+        map.put(key, blockIndex++);
+        return map.remove(key);
+    }
+
+    @Benchmark
+    public List<Integer> avlGetInRange() {
+        int inf = present[nextSlot()];
+        return tree.getInRange(inf, inf + RANGE);
+    }
+
+    @Benchmark
+    public int avlForEachInRange() {
+        int inf = present[nextSlot()];
+        final int[] count = new int[1];
+        tree.forEachInRange(inf, inf + RANGE, new AVLTree.RangeVisitor<Integer>() {
+            @Override
+            public void visit(Integer key) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    @Benchmark
+    public int treeMapGetInRange() {
+        int inf = present[nextSlot()];
+        return map.subMap(inf, true, inf + RANGE, true).size();
+    }
+}
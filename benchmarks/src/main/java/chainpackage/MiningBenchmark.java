@@ -0,0 +1,76 @@
+package chainpackage;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proof of work of a block at different difficulties and with every hash algorithm. The hashes counter reports the amount of
+ * nonces tried per second, the score reports sealed blocks per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MiningBenchmark {
+    private static final String PREV_HASH = "00000a4c1f2e8b3d7c6f5e4d3c2b1a0f9e8d7c6b5a4f3e2d1c0b9a8f7e6d5c4b";
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int zeros;
+
+    @Param({"1"})
+    public int workers;
+
+    @Param({"SHA256", "BLAKE2S"})
+    public HashAlgorithm algorithm;
+
+    private Miner miner;
+    private int index;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Hashes {
+        public long hashes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            hashes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        miner = new Miner(workers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        miner.shutdown();
+    }
+
+    @Benchmark
+    public BlockHash calculateHash(Hashes counter) {
+        /*a different block every time so the same nonce is not found over and over*/
+        index++;
+        byte[] prefix = (index + "add" + index + "true" + PREV_HASH).getBytes();
+        DataPair<Long, BlockHash> aux = miner.mine(algorithm, prefix, zeros, new MiningJob(zeros));
+        /*with a single worker every nonce below the one found was tried*/
+        counter.hashes += aux.getElement1() + 1;
+        return aux.getElement2();
+    }
+}
@@ -0,0 +1,62 @@
+package chainpackage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating the BlockChain as it grows, a full audit and an incremental validation.
+ * The chain is mined with a single zero so the setup stays short, validation cost does not depend on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    @Param({"100", "1000", "10000", "100000"})
+    public int blocks;
+
+    private BlockChain chain;
+
+    @Setup
+    public void setUp() {
+        chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 1; i < blocks; i++) {
+            chain.operate(i % 3 == 0 ? "remove" : "add", i / 2);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        chain.close();
+    }
+
+    /**
+     * Every block rechecked, what validateChain() cost before the verified watermark.
+     */
+    @Benchmark
+    public boolean fullAudit() {
+        return chain.audit().isValid();
+    }
+
+    /**
+     * Nothing changed since the last validation, only the blocks past the watermark are checked.
+     */
+    @Benchmark
+    public boolean validateChain() {
+        return chain.validateChain();
+    }
+}
@@ -0,0 +1,68 @@
+package chainpackage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups on the newest version of a PersistentAVLTree while one thread keeps adding and removing keys.
+ * The readers take no lock, so their throughput should grow with their amount, which is changed with
+ * -tg 1,N (one writer, N readers).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionReadBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    private PersistentAVLTree<Integer> tree;
+    private int blockIndex;
+
+    @Setup
+    public void setUp() {
+        tree = new PersistentAVLTree<>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return o1.compareTo(o2);
+            }
+        });
+        /*even keys are present, the writer adds and removes odd ones*/
+        for (int i = 0; i < size; i++) {
+            tree.add(2 * i, blockIndex++);
+        }
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public boolean write() {
+        int key = 2 * ThreadLocalRandom.current().nextInt(size) + 1;
+        tree.add(key, blockIndex++);
+        return tree.remove(key, blockIndex++);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public boolean read() {
+        return tree.getVersion().contains(2 * ThreadLocalRandom.current().nextInt(size));
+    }
+}
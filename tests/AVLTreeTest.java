@@ -1,11 +1,21 @@
+package chainpackage;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
-class AVLTreeTest {
+public class AVLTreeTest {
     private AVLTree<Integer> tree1 = new AVLTree<>(new Comparator<Integer>() {
         @Override
         public int compare(Integer o1, Integer o2) {
@@ -24,10 +34,10 @@ class AVLTreeTest {
         tree1.add(1,2);
         tree1.add(3,3);
         tree1.add(5,4);
-        tree2.add(1,1);
-        tree1.add(1,2);
-        tree1.add(3,3);
-        tree1.add(5,4);
+        tree2.add(2,1);
+        tree2.add(1,2);
+        tree2.add(3,3);
+        tree2.add(5,4);
         assertTrue(tree1.equals(tree2));
     }
 
@@ -48,31 +58,109 @@ class AVLTreeTest {
     }
 
     @Test
-    void test() {
+    public void test() {
     }
 
     @Test
-    void balance() {
+    public void balance() {
     }
 
     @Test
-    void getBalance() {
+    public void getBalance() {
     }
 
     @Test
-    void remove() {
+    public void remove() {
+        TreeSet<Integer> keys = new TreeSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(keys.add(key), tree1.add(key, i));
+            } else {
+                assertEquals(keys.remove(key), tree1.remove(key, i));
+            }
+            assertEquals(keys.size(), tree1.size());
+        }
+        for (int key = 0; key < 300; key++) {
+            assertEquals(keys.contains(key), tree1.lookup(key).getElement1());
+        }
     }
 
     @Test
-    void deleteKey() {
+    public void deleteKey() {
     }
 
     @Test
-    void getInRange() {
+    public void orderStatistics() {
+        TreeSet<Integer> keys = new TreeSet<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 4000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) > 0) {
+                tree1.add(key, i);
+                keys.add(key);
+            } else {
+                tree1.remove(key, i);
+                keys.remove(key);
+            }
+        }
+        assertEquals(keys.size(), tree1.size());
+        assertEquals(keys.first(), tree1.getMin());
+        assertEquals(keys.last(), tree1.getMax());
+        int k = 0;
+        for (Integer key : keys) {
+            assertEquals(key, tree1.select(k));
+            assertEquals(k, tree1.rank(key));
+            k++;
+        }
+        for (int i = 0; i < 300; i++) {
+            int inf = random.nextInt(1100) - 50;
+            int sup = inf + random.nextInt(200) - 10;
+            int expected = inf <= sup ? keys.subSet(inf, true, sup, true).size() : 0;
+            assertEquals(expected, tree1.countInRange(inf, sup));
+            assertEquals(keys.headSet(inf).size(), tree1.rank(inf));
+        }
+        assertEquals(leaves(tree1.getRoot()), tree1.getLeavesCount());
+        assertEquals(tree1.getLeavesCount(), tree1.copy().getLeavesCount());
+        assertEquals(0, tree2.size());
+        assertNull(tree2.getMin());
+        assertNull(tree2.getMax());
+    }
+
+    private static int leaves(PrintableNode node) {
+        if (node == null) return 0;
+        if (node.getLeft() == null && node.getRight() == null) return 1;
+        return leaves(node.getLeft()) + leaves(node.getRight());
+    }
+
+    @Test
+    public void getInRange() {
+        TreeSet<Integer> keys = new TreeSet<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(2000);
+            tree1.add(key, i);
+            keys.add(key);
+        }
+        for (int i = 0; i < 200; i++) {
+            int inf = random.nextInt(2100) - 50;
+            int sup = inf + random.nextInt(300) - 20;
+            List<Integer> expected = new ArrayList<>();
+            if (inf <= sup) expected.addAll(keys.subSet(inf, true, sup, true));
+            assertEquals(expected, tree1.getInRange(inf, sup));
+            List<Integer> iterated = new ArrayList<>();
+            for (Iterator<Integer> it = tree1.iterator(inf, sup); it.hasNext(); ) {
+                iterated.add(it.next());
+            }
+            assertEquals(expected, iterated);
+        }
+        assertTrue(tree2.getInRange(0, 10).isEmpty());
+        assertFalse(tree2.iterator(0, 10).hasNext());
     }
 
     @Test
-    void equals() {
+    public void equals() {
     }
 
 }
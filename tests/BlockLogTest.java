@@ -0,0 +1,230 @@
+package chainpackage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlockStore.Record record(int i) {
+        BlockHash hash = BlockHash.fromBytes(HashAlgorithm.SHA256.hash(new byte[]{(byte) i, (byte) (i >> 8)}));
+        return new BlockStore.Record(i, 1000L * i, 42L + i, i % 3, hash, BlockHash.ZERO, Instruction.of("add", i, true));
+    }
+
+    @Test
+    public void reopenKeepsEveryRecord() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockLog log = new BlockLog(dir, 8, 4);
+        for (int i = 0; i < 30; i++) {
+            log.append(record(i));
+        }
+        log.close();
+
+        log = new BlockLog(dir, 8, 4);
+        assertEquals(30, log.size());
+        for (int i = 0; i < 30; i++) {
+            BlockStore.Record r = log.read(i);
+            assertEquals(i, r.getIndex());
+            assertEquals(1000L * i, r.getNonce());
+            assertEquals(42L + i, r.getTimestamp());
+            assertEquals(i % 3, r.getExtraNonce());
+            assertEquals(record(i).getHash(), r.getHash());
+            assertEquals(Instruction.of("add", i, true), r.getInstruction());
+        }
+        log.append(record(30));
+        assertEquals(31, log.size());
+        log.close();
+    }
+
+    @Test
+    public void tornRecordIsTruncated() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockLog log = new BlockLog(dir, 8, 1);
+        for (int i = 0; i < 12; i++) {
+            log.append(record(i));
+        }
+        log.close();
+        /*corrupt block 10, the third record of the second segment*/
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("segment-0000000008.log").toFile(), "rw")) {
+            file.seek(2 * BlockLog.RECORD_SIZE + 100);
+            file.write(0x55);
+        }
+
+        log = new BlockLog(dir, 8, 1);
+        assertEquals(10, log.size());
+        log.append(record(10));
+        assertEquals("add 10 true", log.read(10).getInstruction().toString());
+        log.close();
+    }
+
+    @Test
+    public void rewritesSurviveReopen() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockLog log = new BlockLog(dir, 8, 64);
+        for (int i = 0; i < 20; i++) {
+            log.append(record(i));
+        }
+        log.setInstruction(3, Instruction.data("first"));
+        log.setInstruction(17, Instruction.data("second"));
+        log.setInstruction(3, Instruction.data("third"));
+        log.close();
+        /*a rewrite torn by a crash*/
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("rewrites.log").toFile(), "rw")) {
+            file.seek(file.length());
+            file.writeInt(5);
+            file.writeInt(40);
+            file.write(7);
+        }
+
+        log = new BlockLog(dir, 8, 64);
+        assertEquals("third", log.getInstruction(3).toString());
+        assertEquals("second", log.getInstruction(17).toString());
+        assertEquals(Instruction.of("add", 5, true), log.getInstruction(5));
+        assertEquals(Instruction.of("add", 3, true), log.getAppendedInstruction(3));
+        assertEquals(record(3).getHash(), log.getHash(3));
+        log.setInstruction(5, Instruction.data("fourth"));
+        log.close();
+
+        log = new BlockLog(dir, 8, 64);
+        assertEquals("fourth", log.getInstruction(5).toString());
+        assertEquals("third", log.getInstruction(3).toString());
+        log.close();
+    }
+
+    @Test
+    public void chainSurvivesRestart() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        for (int i = 0; i < 10; i++) {
+            chain.operate("add", i);
+        }
+        chain.operate("remove", 4);
+        BlockHash root = chain.getMerkleRoot();
+        chain.close();
+
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertEquals(12, chain.size());
+        assertEquals(root, chain.getMerkleRoot());
+        assertTrue(chain.audit().isValid());
+        assertTrue(chain.getTree().lookup(3).getElement1());
+        assertTrue(!chain.getTree().lookup(4).getElement1());
+        chain.operate("add", 4);
+        assertTrue(chain.validate().isValid());
+        chain.modify(5, "Invalid Instruction");
+        chain.close();
+
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertEquals(13, chain.size());
+        assertEquals(5, chain.validate().getIndex());
+        chain.close();
+    }
+
+    @Test
+    public void restartResumesFromSnapshot() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        chain.setSnapshotInterval(8);
+        for (int i = 0; i < 20; i++) {
+            chain.operate("add", i);
+        }
+        chain.operate("remove", 3);
+        chain.operate("remove", 15);
+        BlockHash root = chain.getMerkleRoot();
+        BlockHash early = chain.getBlockHash(5);
+        DataPair<Boolean, Integer> before = chain.lookupAt(3, 10);
+        DataPair<Boolean, Integer> after = chain.lookupAt(7, 21);
+        chain.close();
+
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertEquals(23, chain.size());
+        assertEquals(root, chain.getMerkleRoot());
+        assertEquals(5, chain.findByHash(early));
+        assertEquals(6, chain.findByPrevHash(early));
+        assertEquals(before.getElement1(), chain.lookupAt(3, 10).getElement1());
+        assertEquals(before.getElement2(), chain.lookupAt(3, 10).getElement2());
+        assertEquals(after.getElement1(), chain.lookupAt(7, 21).getElement1());
+        assertFalse(chain.lookupAt(3, 22).getElement1());
+        assertFalse(chain.lookupAt(15, 2).getElement1());
+        assertFalse(chain.getVersion().contains(15));
+        assertTrue(chain.getVersion().contains(14));
+        assertTrue(chain.audit().isValid());
+        chain.operate("add", 3);
+        assertTrue(chain.lookupAt(3, 23).getElement1());
+        assertTrue(chain.proveBlock(22).verify(chain.getHasher(), chain.getMerkleRoot(),
+                Arrays.asList(chain.getBlockHash(22))));
+        chain.close();
+    }
+
+    @Test
+    public void modifiedBlocksKeepTheirOperationAfterReopen() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        chain.setSnapshotInterval(0);
+        for (int i = 0; i < 10; i++) {
+            chain.operate("add", i);
+        }
+        chain.operate("remove", 4);
+        chain.modify(3, "tampered");
+        chain.modify(11, "tampered");
+        AVLTree<Integer> tree = chain.getTree().copy();
+        DataPair<Boolean, Integer> removed = chain.lookupAt(4, 11);
+        chain.close();
+
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertEquals(tree, chain.getTree());
+        assertTrue(chain.getVersion().contains(2));
+        assertFalse(chain.getVersion().contains(4));
+        assertEquals(removed.getElement1(), chain.lookupAt(4, 11).getElement1());
+        assertFalse(chain.audit().isValid());
+        chain.close();
+    }
+
+    @Test
+    public void lookupAtAgreesWithTheTreeOfEveryBlock() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        chain.setSnapshotInterval(16);
+        Random random = new Random(41);
+        for (int i = 0; i < 150; i++) {
+            chain.operate(random.nextInt(3) > 0 ? "add" : "remove", random.nextInt(40));
+        }
+        chain.close();
+
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        for (int i = 0; i < 50; i++) {
+            chain.operate(random.nextInt(3) > 0 ? "add" : "remove", random.nextInt(40));
+        }
+        for (int i = 0; i < chain.size(); i++) {
+            AVLTree<Integer> tree = chain.getTreeAt(i);
+            for (int key = 0; key < 40; key++) {
+                DataPair<Boolean, Set<Integer>> expected = tree.lookup(key);
+                DataPair<Boolean, Integer> found = chain.lookupAt(key, i);
+                assertEquals(expected.getElement1(), found.getElement1());
+                assertEquals(expected.getElement1() ? Collections.max(expected.getElement2()) : null,
+                        found.getElement2());
+            }
+        }
+        chain.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherHashIsRejected() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir).close();
+        new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.BLAKE2S, dir).close();
+    }
+}
@@ -0,0 +1,83 @@
+package chainpackage;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChainRendererTest {
+    private static BlockChain chain;
+    private static String[] blocks;
+
+    @BeforeClass
+    public static void createChain() {
+        chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 10; i++) {
+            chain.operate("add", i);
+        }
+        blocks = new String[chain.size()];
+        for (int i = 0; i < blocks.length; i++) {
+            StringBuilder block = new StringBuilder();
+            try {
+                chain.appendBlock(block, i);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            blocks[i] = block.toString();
+        }
+    }
+
+    @AfterClass
+    public static void closeChain() {
+        chain.close();
+    }
+
+    private String expected(int from, int to) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            ret.append(blocks[i]).append("-->");
+            if ((i - from + 1) % 4 == 0) ret.append('\n');
+        }
+        return ret.toString();
+    }
+
+    @Test
+    public void wholeChain() {
+        assertEquals(11, blocks.length);
+        assertEquals("[ index:3/nonce: ", blocks[3].substring(0, 17));
+        assertTrue(blocks[3].endsWith("/instruction: add 2 true]"));
+        assertEquals(expected(0, 11), chain.toString());
+    }
+
+    @Test
+    public void tailAndPages() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new ChainRenderer(chain).renderTail(out, 3);
+        assertEquals("... 8 earlier blocks\n" + expected(8, 11), out.toString());
+
+        out.setLength(0);
+        new ChainRenderer(chain).renderTail(out, 50);
+        assertEquals(expected(0, 11), out.toString());
+
+        out.setLength(0);
+        new ChainRenderer(chain).renderPage(out, 2, 4);
+        assertEquals(expected(8, 11), out.toString());
+
+        out.setLength(0);
+        new ChainRenderer(chain).renderPage(out, 3, 4);
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void summary() throws IOException {
+        chain.awaitSealed();
+        StringBuilder out = new StringBuilder();
+        new ChainRenderer(chain).renderSummary(out);
+        assertTrue(out.toString().startsWith("Blocks: 11 / pending: 0"));
+        assertTrue(out.toString().contains("Last hash: " + chain.getBlockHash(10)));
+    }
+}
@@ -0,0 +1,79 @@
+package chainpackage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChainValidatorTest {
+    private ForkJoinPool pool = new ForkJoinPool(4);
+    private ChainValidator validator = new ChainValidator(pool);
+
+    @After
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    private ChainValidator.BlockCheck failingAt(final int... indexes) {
+        return new ChainValidator.BlockCheck() {
+            @Override
+            public String check(int index) {
+                for (int i : indexes) {
+                    if (i == index) return "bad " + index;
+                }
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void validRange() {
+        assertTrue(validator.validate(1, 100000, failingAt()).isValid());
+    }
+
+    @Test
+    public void reportsLowestFailure() {
+        ValidationResult result = validator.validate(1, 100000, failingAt(90000, 4321, 4322, 70000));
+        assertEquals(4321, result.getIndex());
+        assertEquals("bad 4321", result.getReason());
+    }
+
+    @Test
+    public void sequentialRange() {
+        assertEquals(7, validator.validate(1, 50, failingAt(30, 7)).getIndex());
+    }
+
+    @Test
+    public void chainReportsTamperedBlock() {
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 10; i++) {
+            chain.operate("add", i);
+        }
+        assertTrue(chain.validate().isValid());
+        chain.modify(6, "Invalid Instruction");
+        chain.modify(3, "Invalid Instruction");
+        assertEquals(3, chain.validate().getIndex());
+        chain.close();
+    }
+
+    @Test
+    public void watermarkFollowsModifications() {
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 10; i++) {
+            chain.operate("add", i);
+        }
+        assertTrue(chain.validate().isValid());
+        assertEquals(10, chain.getVerifiedIndex());
+        chain.operate("add", 10);
+        assertEquals(10, chain.getVerifiedIndex());
+        chain.modify(4, "Invalid Instruction");
+        assertEquals(3, chain.getVerifiedIndex());
+        assertEquals(4, chain.validate().getIndex());
+        assertEquals(3, chain.getVerifiedIndex());
+        assertEquals(4, chain.audit().getIndex());
+        chain.close();
+    }
+}
@@ -0,0 +1,88 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DigestTest {
+
+    private static byte[] digest(Digest digest, byte[] data) {
+        byte[] out = new byte[digest.getDigestLength()];
+        digest.update(data, 0, data.length);
+        digest.digest(out, 0);
+        return out;
+    }
+
+    @Test
+    public void sha256MatchesJdk() throws Exception {
+        Random random = new Random(7);
+        Sha256 sha = new Sha256();
+        for (int len = 0; len < 300; len++) {
+            byte[] data = new byte[len];
+            random.nextBytes(data);
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest(sha, data));
+        }
+    }
+
+    @Test
+    public void blake2sKnownAnswers() {
+        /*RFC 7693 appendix B and the reference implementation*/
+        assertEquals("508c5e8c327c14e2e1a72ba34eeb452f37458b209ed63a294d999b4c86675982",
+                Digest.toHex(HashAlgorithm.BLAKE2S.hash("abc".getBytes())));
+        assertEquals("69217a3079908094e11121d042354a7c1f55b6482ca1a51e1b250dfd1ed0eef9",
+                Digest.toHex(HashAlgorithm.BLAKE2S.hash(new byte[0])));
+        byte[] data = new byte[200];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        assertEquals("6d244e1a06ce4ef578dd0f63aff0936706735119ca9c8d22d86c801414ab9741",
+                Digest.toHex(HashAlgorithm.BLAKE2S.hash(data)));
+    }
+
+    @Test
+    public void restoreGoesBackToMark() {
+        byte[] data = new byte[150];
+        new Random(3).nextBytes(data);
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            for (int cut = 0; cut < data.length; cut += 7) {
+                Digest digest = algorithm.newDigest();
+                digest.update(data, 0, cut);
+                digest.mark();
+                digest.update(data, cut, data.length - cut);
+                byte[] first = new byte[digest.getDigestLength()];
+                digest.digest(first, 0);
+                digest.update(data, 0, 10);
+                digest.restore();
+                digest.update(data, cut, data.length - cut);
+                byte[] second = new byte[digest.getDigestLength()];
+                digest.digest(second, 0);
+                assertArrayEquals(algorithm.hash(data), first);
+                assertArrayEquals(first, second);
+            }
+        }
+    }
+
+    @Test
+    public void leadingZeros() {
+        byte[] hash = {0x00, 0x0f, (byte) 0xff};
+        assertTrue(Digest.hasLeadingZeros(hash, 2));
+        assertTrue(Digest.hasLeadingZeros(hash, 3));
+        assertFalse(Digest.hasLeadingZeros(hash, 4));
+    }
+
+    @Test
+    public void minedHashIsValid() {
+        Miner miner = new Miner(2);
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            byte[] prefix = "1add5true00000000".getBytes();
+            DataPair<Long, BlockHash> aux = miner.mine(algorithm, prefix, 3, new MiningJob(3));
+            assertEquals(Miner.hash(algorithm, prefix, aux.getElement1()), aux.getElement2());
+            assertTrue(aux.getElement2().toString().startsWith("000"));
+        }
+        miner.shutdown();
+    }
+}
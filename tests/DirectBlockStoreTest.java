@@ -0,0 +1,102 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirectBlockStoreTest {
+
+    private BlockStore.Record record(int i, BlockHash prev) {
+        BlockHash hash = BlockHash.fromBytes(HashAlgorithm.SHA256.hash(new byte[]{(byte) i, (byte) (i >> 8)}));
+        return new BlockStore.Record(i, 7L * i, 100L + i, i % 5, hash, prev, Instruction.of("remove", -i, i % 2 == 0));
+    }
+
+    @Test
+    public void fieldsAcrossSegments() throws IOException {
+        DirectBlockStore store = new DirectBlockStore(16);
+        BlockHash prev = BlockHash.ZERO;
+        for (int i = 0; i < 100; i++) {
+            BlockStore.Record r = record(i, prev);
+            store.append(r);
+            prev = r.getHash();
+        }
+        assertEquals(100, store.size());
+        prev = BlockHash.ZERO;
+        for (int i = 0; i < 100; i++) {
+            BlockStore.Record r = record(i, prev);
+            assertEquals(r.getNonce(), store.getNonce(i));
+            assertEquals(r.getTimestamp(), store.getTimestamp(i));
+            assertEquals(r.getExtraNonce(), store.getExtraNonce(i));
+            assertEquals(r.getHash(), store.getHash(i));
+            assertEquals(prev, store.getPrevHash(i));
+            assertEquals(r.getInstruction(), store.getInstruction(i));
+            prev = r.getHash();
+        }
+        store.setInstruction(40, Instruction.data("Invalid Instruction"));
+        assertEquals("Invalid Instruction", store.getInstruction(40).toString());
+        assertEquals(record(40, prev).getHash(), store.getHash(40));
+        /*longer than a record, like the strings modify() always took*/
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) text.append("data ");
+        store.setInstruction(41, Instruction.data(text.toString()));
+        assertEquals(text.toString(), store.getInstruction(41).toString());
+        store.close();
+    }
+
+    @Test(timeout = 10000)
+    public void rewritesAreSeenWhole() throws Exception {
+        final DirectBlockStore store = new DirectBlockStore(16);
+        store.append(record(0, BlockHash.ZERO));
+        final Instruction original = store.getInstruction(0);
+        final Instruction[] values = {Instruction.data("a"), Instruction.data("a much longer instruction text")};
+        final AtomicBoolean done = new AtomicBoolean();
+        final boolean[] whole = {true};
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    Instruction seen = store.read(0).getInstruction();
+                    if (!seen.equals(original) && !seen.equals(values[0]) && !seen.equals(values[1])) {
+                        whole[0] = false;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000; i++) {
+            store.setInstruction(0, values[i % 2]);
+        }
+        done.set(true);
+        reader.join();
+        assertTrue(whole[0]);
+        assertEquals(values[1], store.getInstruction(0));
+        store.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blocksAreAppendedInOrder() throws IOException {
+        DirectBlockStore store = new DirectBlockStore();
+        store.append(record(1, BlockHash.ZERO));
+    }
+
+    @Test
+    public void chainReadsBlocksFromStore() {
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 20; i++) {
+            chain.operate("add", i);
+        }
+        List<?> blocks = chain.getChain();
+        assertEquals(21, blocks.size());
+        assertEquals("[ index:20/nonce: ", blocks.get(20).toString().substring(0, 18));
+        assertEquals(blocks.get(20).toString(), ((Object) chain.getLatestBlock()).toString());
+        assertEquals(true, chain.validateChain());
+        chain.modify(12, "Invalid Instruction");
+        assertEquals(12, chain.audit().getIndex());
+        chain.close();
+    }
+}
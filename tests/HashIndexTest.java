@@ -0,0 +1,83 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class HashIndexTest {
+
+    private static HashIndex indexOf(final List<BlockHash> hashes) {
+        return new HashIndex(new HashIndex.BlockHashes() {
+            @Override
+            public BlockHash get(int index) {
+                return hashes.get(index);
+            }
+        });
+    }
+
+    @Test
+    public void findsEveryHash() {
+        List<BlockHash> hashes = new ArrayList<>();
+        HashIndex index = indexOf(hashes);
+        for (int i = 0; i < 5000; i++) {
+            BlockHash hash = BlockHash.fromBytes(HashAlgorithm.SHA256.hash(new byte[]{(byte) i, (byte) (i >> 8)}));
+            hashes.add(hash);
+            index.put(hash, i);
+        }
+        assertEquals(5000, index.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, index.find(hashes.get(i)));
+        }
+        assertEquals(-1, index.find(BlockHash.fromBytes(HashAlgorithm.SHA256.hash(new byte[]{1, 2, 3}))));
+    }
+
+    @Test(timeout = 5000)
+    public void leadingZerosDoNotCollide() {
+        List<BlockHash> hashes = new ArrayList<>();
+        HashIndex index = indexOf(hashes);
+        for (int i = 0; i < 100000; i++) {
+            /*a hash mined with 16 zero digits*/
+            byte[] digest = HashAlgorithm.SHA256.hash(new byte[]{(byte) i, (byte) (i >> 8), (byte) (i >> 16)});
+            java.util.Arrays.fill(digest, 0, 8, (byte) 0);
+            hashes.add(BlockHash.fromBytes(digest));
+            index.put(hashes.get(i), i);
+        }
+        for (int i = 0; i < 100000; i += 7) {
+            assertEquals(i, index.find(hashes.get(i)));
+        }
+        assertEquals(-1, index.find(new BlockHash(0, 1, 2, 3)));
+    }
+
+    @Test
+    public void sharedPrefixIsConfirmed() {
+        List<BlockHash> hashes = new ArrayList<>();
+        HashIndex index = indexOf(hashes);
+        for (int i = 0; i < 40; i++) {
+            hashes.add(new BlockHash(7, i, 0, 0));
+            index.put(hashes.get(i), i);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, index.find(new BlockHash(7, i, 0, 0)));
+        }
+        assertEquals(-1, index.find(new BlockHash(7, 40, 0, 0)));
+    }
+
+    @Test
+    public void chainFindsBlocks() {
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 30; i++) {
+            chain.operate("add", i);
+        }
+        for (int i = 0; i < chain.size(); i++) {
+            BlockHash hash = chain.getBlockHash(i);
+            assertEquals(i, chain.findByHash(hash));
+            assertEquals(i == chain.size() - 1 ? -1 : i + 1, chain.findByPrevHash(hash));
+        }
+        assertEquals(-1, chain.findByHash(BlockHash.ZERO));
+        assertEquals(0, chain.findByPrevHash(BlockHash.ZERO));
+        chain.close();
+    }
+}
@@ -0,0 +1,119 @@
+package chainpackage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryTest {
+    private static final Comparator<Integer> KEYS = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+    };
+    /*key of the operation of every block, negative for a remove*/
+    private int[] operations = new int[1000];
+    private History.Replayer<Integer> replayer = new History.Replayer<Integer>() {
+        @Override
+        public void apply(AVLTree<Integer> tree, int index) {
+            int key = operations[index];
+            if (key >= 0) tree.add(key, index);
+            else tree.remove(-key - 1, index);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Random random = new Random(23);
+        for (int i = 0; i < operations.length; i++) {
+            int key = random.nextInt(100);
+            operations[i] = random.nextInt(3) > 0 ? key : -key - 1;
+        }
+    }
+
+    /**
+     * Offers the state after every block to history.
+     */
+    private void record(History<Integer> history) {
+        AVLTree<Integer> tree = new AVLTree<>(KEYS);
+        for (int i = 0; i < operations.length; i++) {
+            replayer.apply(tree, i);
+            history.add(i, tree);
+        }
+    }
+
+    private AVLTree<Integer> rebuild(int index) {
+        AVLTree<Integer> tree = new AVLTree<>(KEYS);
+        for (int i = 0; i <= index; i++) replayer.apply(tree, i);
+        return tree;
+    }
+
+    @Test
+    public void statesMatchAReplayFromTheStart() {
+        History<Integer> history = new History<>(KEYS, replayer, 50, 1 << 30, 4);
+        record(history);
+        assertEquals(20, history.getCount());
+        for (int i = 0; i < operations.length; i += 37) {
+            AVLTree<Integer> expected = rebuild(i);
+            AVLTree<Integer> actual = history.get(i);
+            assertTrue(expected.equals(actual));
+            assertEquals(expected.getInRange(0, 100), actual.getInRange(0, 100));
+            for (int key = 0; key < 100; key++) {
+                assertEquals(expected.lookup(key).getElement2(), actual.lookup(key).getElement2());
+            }
+        }
+        AVLTree<Integer> state = history.get(512);
+        assertSame(state, history.get(512));
+    }
+
+    @Test
+    public void budgetThinsTheCheckpoints() {
+        History<Integer> history = new History<>(KEYS, replayer, 10, 60000, 2);
+        record(history);
+        assertTrue(history.getBytes() <= 60000);
+        assertTrue(history.getCount() < 100);
+        for (int i = 0; i < operations.length; i += 101) {
+            assertTrue(rebuild(i).equals(history.get(i)));
+            assertTrue(history.getBytes() <= 60000);
+        }
+        /*a state over the whole budget is rebuilt but not kept*/
+        History<Integer> small = new History<>(KEYS, replayer, 10, 100, 2);
+        assertTrue(rebuild(500).equals(small.get(500)));
+        assertEquals(0, small.getCount());
+        assertEquals(0, small.getBytes());
+    }
+
+    @Test
+    public void readersTakeTheCheckpoints() {
+        History<Integer> history = new History<>(KEYS, replayer, 50, 1 << 30, 2);
+        assertTrue(rebuild(640).equals(history.get(640)));
+        /*only the one closest to the state asked for*/
+        assertEquals(1, history.getCount());
+        assertTrue(rebuild(700).equals(history.get(700)));
+        assertEquals(2, history.getCount());
+        assertTrue(rebuild(690).equals(history.get(690)));
+        assertEquals(3, history.getCount());
+        assertTrue(history.remove(650));
+        assertTrue(rebuild(650).equals(history.get(650)));
+    }
+
+    @Test
+    public void cleanAndRemove() {
+        History<Integer> history = new History<>(KEYS, replayer, 10, 1 << 30, 2);
+        record(history);
+        assertEquals(100, history.getCount());
+        history.clean(100);
+        assertEquals(10, history.getCount());
+        assertTrue(history.remove(900));
+        assertFalse(history.remove(900));
+        assertEquals(9, history.getCount());
+        assertTrue(rebuild(950).equals(history.get(950)));
+    }
+}
@@ -0,0 +1,73 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexSetTest {
+    @Test
+    public void increasingIndexes() {
+        IndexSet set = new IndexSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(3);
+        int index = 0;
+        for (int i = 0; i < 2000; i++) {
+            index += 1 + random.nextInt(i % 3 == 0 ? 100000 : 10);
+            assertTrue(set.add(index));
+            expected.add(index);
+        }
+        assertFalse(set.add(index));
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.last().intValue(), set.getLast());
+        for (int i = 0; i <= index + 1; i += 1 + random.nextInt(50)) {
+            assertEquals(expected.contains(i), set.contains(i));
+        }
+        for (int value : expected) {
+            assertTrue(set.contains(value));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+    }
+
+    @Test
+    public void lowerIndexesKeepTheOrder() {
+        IndexSet set = new IndexSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(1000);
+            assertEquals(expected.add(index), set.add(index));
+        }
+        List<Integer> values = new ArrayList<>(set);
+        assertEquals(new ArrayList<>(expected), values);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected.contains(i), set.contains(i));
+        }
+    }
+
+    @Test
+    public void equalsOtherSets() {
+        IndexSet set = new IndexSet();
+        HashSet<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100; i += 3) {
+            set.add(i);
+            expected.add(i);
+        }
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+        assertEquals(expected.hashCode(), set.hashCode());
+        IndexSet copy = new IndexSet(set);
+        set.add(200);
+        assertEquals(expected, copy);
+        assertFalse(copy.contains(200));
+        assertTrue(copy.add(150));
+        assertTrue(copy.contains(150));
+    }
+}
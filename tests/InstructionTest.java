@@ -0,0 +1,51 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class InstructionTest {
+
+    private Instruction decode(Instruction instruction) {
+        byte[] bytes = instruction.toBytes();
+        assertEquals(instruction.length(), bytes.length);
+        return Instruction.fromBytes(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void operationsRoundTrip() {
+        int[] keys = {0, 5, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (String action : new String[]{"add", "remove", "lookup"}) {
+            for (int key : keys) {
+                for (boolean success : new boolean[]{true, false}) {
+                    Instruction instruction = Instruction.of(action, key, success);
+                    assertEquals(5, instruction.length());
+                    assertEquals(instruction, decode(instruction));
+                    assertEquals(instruction, Instruction.fromLong(instruction.toLong()));
+                    assertEquals(action + " " + key + " " + success, instruction.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void genesisAndData() {
+        assertArrayEquals(new byte[]{0}, Instruction.GENESIS.toBytes());
+        assertEquals(Instruction.GENESIS, decode(Instruction.GENESIS));
+        assertEquals("No instruction", Instruction.GENESIS.toString());
+        Instruction data = Instruction.data("Invalid Instruction ñ");
+        assertEquals(data, decode(data));
+        assertEquals("Invalid Instruction ñ", decode(data).toString());
+    }
+
+    @Test(expected = IllegalOperationException.class)
+    public void unknownAction() {
+        Instruction.of("insert", 1, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedBytes() {
+        Instruction.fromBytes(new byte[]{Instruction.ADD, 1, 2}, 0, 3);
+    }
+}
@@ -0,0 +1,73 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IntAVLTreeTest {
+    private AVLTree<Integer> reference = new AVLTree<>(new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+    });
+    private IntAVLTree tree = new IntAVLTree(4);
+
+    @Test
+    public void sameAsAVLTree() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextBoolean()) {
+                assertEquals(reference.add(key, i), tree.add(key, i));
+            } else {
+                assertEquals(reference.remove(key, i), tree.remove(key, i));
+            }
+            assertEquals(reference.size(), tree.size());
+        }
+        for (int key = 0; key < 300; key++) {
+            DataPair<Boolean, Set<Integer>> expected = reference.lookup(key);
+            DataPair<Boolean, Set<Integer>> actual = tree.lookup(key);
+            assertEquals(expected.getElement1(), actual.getElement1());
+            if (expected.getElement1()) {
+                assertEquals(expected.getElement2(), new HashSet<>(actual.getElement2()));
+            } else {
+                assertNull(actual.getElement2());
+            }
+            assertEquals(reference.getLevel(key), tree.getLevel(key));
+        }
+    }
+
+    @Test
+    public void modIndexOutOfOrder() {
+        tree.add(1, 10);
+        tree.add(2, 5);
+        tree.add(3, 7);
+        Set<Integer> modIndex = tree.lookup(2).getElement2();
+        assertTrue(modIndex.contains(5));
+        assertTrue(modIndex.contains(7));
+        assertFalse(modIndex.contains(10));
+        assertEquals(2, modIndex.size());
+    }
+
+    @Test
+    public void removedNodesAreReused() {
+        for (int i = 0; i < 100; i++) tree.add(i, i);
+        for (int i = 0; i < 100; i++) assertTrue(tree.remove(i, 100 + i));
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.getHeight());
+        for (int i = 0; i < 100; i++) tree.add(i, 200 + i);
+        assertEquals(100, tree.size());
+        assertTrue(tree.contains(99));
+        assertFalse(tree.lookup(0).getElement2().contains(0));
+        assertTrue(tree.lookup(0).getElement2().contains(200));
+    }
+}
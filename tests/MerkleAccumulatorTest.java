@@ -0,0 +1,130 @@
+package chainpackage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MerkleAccumulatorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Hasher hasher = HashAlgorithm.SHA256;
+
+    private static BlockHash block(int i) {
+        return new BlockHash(i, i * 31L, i * 17L, ~i);
+    }
+
+    private MerkleAccumulator accumulator(int n) {
+        MerkleAccumulator ret = new MerkleAccumulator(hasher);
+        for (int i = 0; i < n; i++) {
+            ret.append(block(i));
+        }
+        return ret;
+    }
+
+    private static List<BlockHash> blocks(int from, int to) {
+        List<BlockHash> ret = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ret.add(block(i));
+        }
+        return ret;
+    }
+
+    @Test
+    public void everyRangeVerifies() {
+        for (int n = 1; n <= 40; n++) {
+            MerkleAccumulator acc = accumulator(n);
+            BlockHash root = acc.getRoot();
+            for (int from = 0; from < n; from++) {
+                for (int to = from; to < n; to++) {
+                    assertTrue(acc.proveRange(from, to).verify(hasher, root, blocks(from, to)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void proofIsLogarithmic() {
+        MerkleAccumulator acc = accumulator(100000);
+        assertTrue(acc.prove(54321).getHashes().size() <= 2 * 17);
+        assertTrue(acc.proveRange(1000, 60000).getHashes().size() <= 4 * 17);
+    }
+
+    @Test
+    public void tamperedBlockFails() {
+        MerkleAccumulator acc = accumulator(13);
+        MerkleProof proof = acc.proveRange(3, 5);
+        assertFalse(proof.verify(hasher, acc.getRoot(), Arrays.asList(block(3), block(9), block(5))));
+        assertFalse(proof.verify(hasher, acc.getRoot(), blocks(3, 4)));
+        assertFalse(acc.prove(4).verify(hasher, acc.getRoot(), blocks(5, 5)));
+    }
+
+    @Test
+    public void rootChangesOnAppend() {
+        MerkleAccumulator acc = accumulator(7);
+        BlockHash root = acc.getRoot();
+        acc.append(block(7));
+        assertNotEquals(root, acc.getRoot());
+        assertEquals(8, acc.size());
+    }
+
+    @Test
+    public void logKeepsFlushedLeaves() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        MerkleLog log = new MerkleLog(hasher, dir, 4);
+        for (int i = 0; i < 50; i++) {
+            log.append(block(i));
+        }
+        log.flush();
+        /*appended after the last flush, as if the process had crashed*/
+        for (int i = 50; i < 60; i++) {
+            log.append(block(i));
+        }
+
+        MerkleLog reopened = new MerkleLog(hasher, dir, 4);
+        assertEquals(50, reopened.size());
+        assertEquals(accumulator(50).getRoot(), reopened.getRoot());
+        assertTrue(reopened.hasLeaf(49, block(49)));
+        assertFalse(reopened.hasLeaf(49, block(48)));
+        for (int i = 50; i < 70; i++) {
+            reopened.append(block(i));
+        }
+        assertEquals(accumulator(70).getRoot(), reopened.getRoot());
+        assertTrue(reopened.proveRange(10, 65).verify(hasher, reopened.getRoot(), blocks(10, 65)));
+        reopened.truncate(30);
+        assertEquals(accumulator(30).getRoot(), reopened.getRoot());
+        log.close();
+        reopened.close();
+    }
+
+    @Test
+    public void chainBlocksAreProven() {
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+        for (int i = 0; i < 6; i++) {
+            chain.operate("add", i);
+        }
+        BlockHash root = chain.getMerkleRoot();
+        assertTrue(chain.proveBlock(4).verify(chain.getHasher(), root, Arrays.asList(chain.getBlockHash(4))));
+        assertTrue(chain.proveRange(0, 6).verify(chain.getHasher(), root, chainHashes(chain, 0, 6)));
+        chain.close();
+    }
+
+    private static List<BlockHash> chainHashes(BlockChain chain, int from, int to) {
+        List<BlockHash> ret = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ret.add(chain.getBlockHash(i));
+        }
+        return ret;
+    }
+}
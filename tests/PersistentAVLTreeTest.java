@@ -0,0 +1,150 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentAVLTreeTest {
+    private static final Comparator<Integer> ORDER = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+    };
+    private PersistentAVLTree<Integer> tree = new PersistentAVLTree<>(ORDER);
+
+    @Test
+    public void everyVersionKeepsItsKeys() {
+        Random random = new Random(17);
+        TreeSet<Integer> keys = new TreeSet<>();
+        List<TreeSet<Integer>> history = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            int key = random.nextInt(200);
+            if (random.nextInt(3) > 0) {
+                assertEquals(keys.add(key), tree.add(key, i));
+            } else {
+                assertEquals(keys.remove(key), tree.remove(key, i));
+            }
+            history.add(new TreeSet<>(keys));
+        }
+        for (int i = 0; i < history.size(); i += 7) {
+            assertEquals(history.get(i).size(), tree.sizeAt(i));
+            for (int key = 0; key < 200; key++) {
+                assertEquals(history.get(i).contains(key), tree.lookupAt(key, i).getElement1());
+            }
+            assertBalanced(tree.getRootAt(i));
+        }
+        assertEquals(keys.size(), tree.size());
+    }
+
+    @Test
+    public void blocksThatChangeNothingShareTheVersion() {
+        tree.add(5, 0);
+        tree.add(3, 2);
+        assertFalse(tree.add(5, 4));
+        assertFalse(tree.remove(9, 5));
+        tree.remove(5, 8);
+        assertEquals(3, tree.getVersionCount());
+        assertFalse(tree.lookupAt(3, 1).getElement1());
+        assertEquals(Integer.valueOf(2), tree.lookupAt(5, 3).getElement2());
+        assertEquals(Integer.valueOf(0), tree.lookupAt(5, 1).getElement2());
+        assertTrue(tree.lookupAt(5, 7).getElement1());
+        assertFalse(tree.lookupAt(5, 8).getElement1());
+        assertNull(tree.lookupAt(5, 8).getElement2());
+        assertNull(tree.getRootAt(-1));
+    }
+
+    @Test
+    public void readersSeeWholeVersionsWhileTheWriterRuns() throws InterruptedException {
+        final int blocks = 20000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!done.get() && failure.get() == null) {
+                        /*block i adds key i, so the version of block b holds exactly the keys 0..b*/
+                        PersistentAVLTree.Version<Integer> version = tree.getVersion();
+                        int b = version.getBlockIndex();
+                        if (version.size() != b + 1 || (b >= 0 && !version.contains(b)) || version.contains(b + 1)
+                                || version.getInRange(b - 10, b + 10).size() != Math.min(b + 1, 11)) {
+                            failure.set("inconsistent version of block " + b);
+                        }
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (int i = 0; i < blocks; i++) {
+            tree.add(i, i);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(blocks, tree.getVersion().size());
+    }
+
+    @Test
+    public void marksTheBlocksOfAVLTree() {
+        Random random = new Random(29);
+        AVLTree<Integer> avl = new AVLTree<>(ORDER);
+        PersistentAVLTree<Integer> restored = null;
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextInt(3) > 0) {
+                avl.add(key, i);
+                tree.add(key, i);
+                if (restored != null) restored.add(key, i);
+            } else {
+                avl.remove(key, i);
+                tree.remove(key, i);
+                if (restored != null) restored.remove(key, i);
+            }
+            if (i == 1000) {
+                /*as a chain reopened from the snapshot of block 1000*/
+                restored = new PersistentAVLTree<>(ORDER);
+                restored.setBase(avl.copy(), i);
+            }
+            for (int k = 0; k < 300; k += 3) {
+                DataPair<Boolean, Set<Integer>> found = avl.lookup(k);
+                Integer last = found.getElement1() ? Collections.max(found.getElement2()) : null;
+                assertEquals(last, tree.lookupAt(k, i).getElement2());
+                if (restored != null) assertEquals(last, restored.lookupAt(k, i).getElement2());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void olderBlockIsRejected() {
+        tree.add(1, 10);
+        tree.add(2, 9);
+    }
+
+    /**
+     * @return height of the subtree.
+     */
+    private static int assertBalanced(PrintableNode node) {
+        if (node == null) return -1;
+        int left = assertBalanced(node.getLeft());
+        int right = assertBalanced(node.getRight());
+        assertTrue(Math.abs(left - right) <= 1);
+        return 1 + Math.max(left, right);
+    }
+}
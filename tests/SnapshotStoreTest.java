@@ -0,0 +1,116 @@
+package chainpackage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Comparator<Integer> KEYS = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static final AVLTree.KeyCodec<Integer> CODEC = new AVLTree.KeyCodec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer key) throws IOException {
+            out.writeInt(key);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private void assertSameTree(AVLTree<Integer> expected, AVLTree<Integer> actual, int maxKey) {
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), actual.size());
+        for (int key = 0; key <= maxKey; key++) {
+            assertEquals(expected.lookup(key).getElement1(), actual.lookup(key).getElement1());
+            assertEquals(expected.lookup(key).getElement2(), actual.lookup(key).getElement2());
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        AVLTree<Integer> tree = new AVLTree<>(KEYS);
+        for (int i = 1; i <= 200; i++) {
+            tree.add((i * 37) % 101, i);
+        }
+        for (int i = 201; i <= 260; i++) {
+            tree.remove((i * 13) % 101, i);
+        }
+        SnapshotStore<Integer> store = new SnapshotStore<>(folder.getRoot().toPath(), KEYS, CODEC, 2);
+        BlockHash tip = BlockHash.fromBytes(HashAlgorithm.SHA256.hash(new byte[]{1}));
+        store.write(tree, 260, tip);
+
+        SnapshotStore.Snapshot<Integer> snapshot = store.read(260);
+        assertEquals(260, snapshot.getIndex());
+        assertEquals(tip, snapshot.getTip());
+        assertSameTree(tree, snapshot.getTree(), 101);
+        assertSameTree(tree, tree.copy(), 101);
+    }
+
+    @Test
+    public void keepsNewestAndRejectsDamaged() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        SnapshotStore<Integer> store = new SnapshotStore<>(dir, KEYS, CODEC, 2);
+        AVLTree<Integer> tree = new AVLTree<>(KEYS);
+        for (int i = 1; i <= 4; i++) {
+            tree.add(i, i);
+            store.write(tree, i, BlockHash.ZERO);
+        }
+        assertEquals(Arrays.asList(4, 3), store.indexes());
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("snapshot-0000000004.snap").toFile(), "rw")) {
+            file.seek(45);
+            file.write(0x7f);
+        }
+        assertNull(store.read(4));
+        assertEquals(3, store.read(3).getTree().size());
+    }
+
+    @Test
+    public void reopenedChainStartsFromSnapshot() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        chain.setSnapshotInterval(8);
+        for (int i = 1; i <= 60; i++) {
+            chain.operate(i % 4 == 0 ? "remove" : "add", (i * 7) % 23);
+        }
+        AVLTree<Integer> expected = chain.getTree().copy();
+        chain.close();
+
+        SnapshotStore<Integer> store = new SnapshotStore<>(dir, KEYS, CODEC, 2);
+        assertEquals(Arrays.asList(56, 48), store.indexes());
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertSameTree(expected, chain.getTree(), 23);
+        chain.close();
+
+        /*a damaged snapshot is skipped for the previous one*/
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("snapshot-0000000056.snap").toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        }
+        chain = new BlockChain(1, new Terminal(), new Miner(1), HashAlgorithm.SHA256, dir);
+        assertSameTree(expected, chain.getTree(), 23);
+        chain.close();
+    }
+}
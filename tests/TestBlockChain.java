@@ -1,11 +1,27 @@
+package chainpackage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestBlockChain {
 
 private BlockChain blockChain = new BlockChain(5,new Terminal());
 
+	@After
+	public void closeChain() {
+		blockChain.close();
+	}
+
 	public void testValidateChain() {
 
 		blockChain.operate("add",5);
@@ -27,4 +43,99 @@ private BlockChain blockChain = new BlockChain(5,new Terminal());
 
 
 	}
+
+	@Test
+	public void recoversAfterCancelledBlock() {
+		final AtomicBoolean cancel = new AtomicBoolean();
+		final CountDownLatch queued = new CountDownLatch(1);
+		BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1) {
+			@Override
+			public DataPair<Long, BlockHash> mine(Hasher hasher, byte[] prefix, int zeros, MiningJob job) {
+				if (cancel.get()) {
+					/*both blocks are queued before the first one fails*/
+					try {
+						queued.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new MiningCancelledException("Mining was cancelled.");
+				}
+				return super.mine(hasher, prefix, zeros, job);
+			}
+		});
+		chain.operate("add", 1);
+		cancel.set(true);
+		CompletableFuture<BlockHash> failed = chain.operateAsync("add", 2).getElement2();
+		chain.operateAsync("remove", 1);
+		queued.countDown();
+		try {
+			failed.join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof MiningCancelledException);
+		}
+		chain.awaitSealed();
+		cancel.set(false);
+		assertTrue(chain.operateAsync("add", 3).getElement1());
+		chain.awaitSealed();
+		assertEquals(3, chain.size());
+		assertTrue(chain.getTree().lookup(1).getElement1());
+		assertFalse(chain.getTree().lookup(2).getElement1());
+		assertTrue(chain.getVersion().contains(1));
+		assertFalse(chain.getVersion().contains(2));
+		assertTrue(chain.lookupAt(3, 2).getElement1());
+		assertTrue(chain.validate().isValid());
+		chain.close();
+	}
+
+	@Test
+	public void chainsWithoutAMinerShareOne() {
+		BlockChain first = new BlockChain(1, new Terminal());
+		BlockChain second = new BlockChain(1, new Terminal());
+		first.close();
+		second.operate("add", 1);
+		assertEquals(2, second.size());
+		second.close();
+	}
+
+	@Test
+	public void closeFailsTheQueuedBlocks() {
+		final AtomicBoolean hold = new AtomicBoolean();
+		BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1) {
+			@Override
+			public DataPair<Long, BlockHash> mine(Hasher hasher, byte[] prefix, int zeros, MiningJob job) {
+				/*the block mines until it is cancelled*/
+				while (hold.get() && !job.isCancelled()) {
+					Thread.yield();
+				}
+				if (job.isCancelled()) throw new MiningCancelledException("Mining was cancelled.");
+				return super.mine(hasher, prefix, zeros, job);
+			}
+		});
+		hold.set(true);
+		CompletableFuture<BlockHash> mining = chain.operateAsync("add", 1).getElement2();
+		CompletableFuture<BlockHash> queued = chain.operateAsync("add", 2).getElement2();
+		chain.close();
+		assertTrue(mining.isCompletedExceptionally());
+		assertTrue(queued.isCompletedExceptionally());
+		assertEquals(0, chain.getPendingBlocks());
+		chain.awaitSealed();
+	}
+
+	@Test
+	public void modifiedBlocksKeepTheirOperationInPastTrees() {
+		BlockChain chain = new BlockChain(1, new Terminal(), new Miner(1));
+		for (int i = 0; i < 6; i++) {
+			chain.operate("add", i);
+		}
+		chain.operate("remove", 2);
+		chain.modify(2, "tampered");
+		chain.modify(7, "tampered");
+		AVLTree<Integer> later = chain.getTreeAt(7);
+		assertEquals(chain.getTree(), later);
+		assertTrue(later.lookup(1).getElement1());
+		assertFalse(later.lookup(2).getElement1());
+		assertEquals(chain.getVersion().size(), later.size());
+		chain.close();
+	}
 }
@@ -0,0 +1,69 @@
+package chainpackage;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TreePrinterTest {
+
+    private AVLTree<Integer> tree(int n) {
+        AVLTree<Integer> tree = new AVLTree<>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return o1.compareTo(o2);
+            }
+        });
+        for (int i = 1; i <= n; i++) {
+            tree.add(i, i);
+        }
+        return tree;
+    }
+
+    private String print(PrintableNode root, int levels) throws IOException {
+        StringBuilder out = new StringBuilder();
+        TreePrinter.print(root, levels, out);
+        return out.toString();
+    }
+
+    @Test
+    public void smallTreeIsDrawnWhole() throws IOException {
+        String drawing = print(tree(7).getRoot(), 5);
+        String[] lines = drawing.split(System.lineSeparator());
+        assertEquals(5, lines.length);
+        assertEquals("4", lines[0].trim());
+        assertTrue(lines[4].matches(" *1 +3 +5 +7 *"));
+        assertTrue(!drawing.contains("level"));
+    }
+
+    @Test
+    public void deepLevelsAreSummarized() throws IOException {
+        AVLTree<Integer> tree = tree(100000);
+        String drawing = print(tree.getRoot(), 3);
+        String[] lines = drawing.split(System.lineSeparator());
+        /*three levels drawn, two lines each except the first*/
+        int counted = 0;
+        for (int i = 5; i < lines.length; i++) {
+            assertTrue(lines[i].startsWith("level " + (i - 2) + ": "));
+            counted += Integer.parseInt(lines[i].replaceAll(".*: (\\d+) nodes", "$1"));
+        }
+        assertEquals(100000 - 7, counted);
+        assertEquals(1 + AVLTree.getHeight(tree.getRoot()), 3 + lines.length - 5);
+    }
+
+    @Test
+    public void subtreeFocus() throws IOException {
+        AVLTree<Integer> tree = tree(15);
+        String[] lines = print(tree.getSubtree(12), 1).split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertEquals("12", lines[0].trim());
+        assertEquals("level 1: 2 nodes", lines[1]);
+        assertEquals("level 2: 4 nodes", lines[2]);
+        assertTrue(print(tree.getSubtree(12), 2).trim().matches("(?s)12.*10 +14\\s*level 2: 4 nodes"));
+        assertNull(tree.getSubtree(16));
+    }
+}